@@ -1,6 +1,17 @@
 package org.debian.mavenproxy;
 
 public class ArtifactParseUtil {
+    public static final String METADATA_FILE = "maven-metadata.xml";
+
+    /**
+     * @return true if the request is for repository metadata or one of its checksums,
+     * these paths do not name an artifact version and must not be passed to {@link #parse(String)}
+     */
+    public static boolean isMetadata(String requestPath) {
+        String fileName = requestPath.substring(requestPath.lastIndexOf('/') + 1);
+        return fileName.equals(METADATA_FILE) || fileName.startsWith(METADATA_FILE + ".");
+    }
+
     public static Artifact parse(String requestPath){
         String path = requestPath.startsWith("/") ? requestPath.substring(1) : requestPath;
         int fileLocation = path.lastIndexOf("/");
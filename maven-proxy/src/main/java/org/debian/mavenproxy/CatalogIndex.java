@@ -0,0 +1,256 @@
+package org.debian.mavenproxy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory copy of the imported_artifacts table of the artifact catalog, answering version
+ * lookups without SQLite.
+ * <p>
+ * Coordinates and versions are interned, the versions of an artifact are a range of an int
+ * array of version ids. Artifacts are found in an open addressing table keyed by the combined
+ * hash of groupId and artifactId. The catalog file is checked for changes at most every
+ * {@code checkInterval}, a changed catalog is loaded in the background and swapped in.
+ */
+public class CatalogIndex {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogIndex.class);
+    public static final long DEFAULT_CHECK_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+    private static final String DEBIAN_VERSION = "debian";
+
+    private final Path catalog;
+    private final long checkInterval;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile long nextCheck;
+    private volatile Snapshot snapshot;
+
+    /**
+     * Immutable contents of the catalog at one point in time.
+     */
+    private static final class Snapshot {
+        final long size;
+        final long lastModified;
+        // slot -> artifact index + 1, 0 marks an empty slot
+        final int[] slots;
+        final String[] groupIds;
+        final String[] artifactIds;
+        // versions of artifact i are versionIds[versionStart[i]] to versionIds[versionStart[i + 1] - 1]
+        final int[] versionStart;
+        final int[] versionIds;
+        final String[] versions;
+
+        Snapshot(long size, long lastModified, int[] slots, String[] groupIds, String[] artifactIds,
+                 int[] versionStart, int[] versionIds, String[] versions) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.slots = slots;
+            this.groupIds = groupIds;
+            this.artifactIds = artifactIds;
+            this.versionStart = versionStart;
+            this.versionIds = versionIds;
+            this.versions = versions;
+        }
+
+        int find(String groupId, String artifactId) {
+            int mask = slots.length - 1;
+            for (int slot = hash(groupId, artifactId) & mask; ; slot = (slot + 1) & mask) {
+                int entry = slots[slot] - 1;
+                if (entry < 0) {
+                    return -1;
+                }
+                if (groupIds[entry].equals(groupId) && artifactIds[entry].equals(artifactId)) {
+                    return entry;
+                }
+            }
+        }
+    }
+
+    private CatalogIndex(Path catalog, long checkInterval, Snapshot snapshot) {
+        this.catalog = catalog;
+        this.checkInterval = checkInterval;
+        this.snapshot = snapshot;
+        this.nextCheck = System.nanoTime() + checkInterval;
+    }
+
+    /**
+     * Loads the catalog.
+     *
+     * @param checkInterval minimum time between checks of the catalog file in nanoseconds
+     */
+    public static CatalogIndex open(Path catalog, long checkInterval) throws IOException, SQLException {
+        return new CatalogIndex(catalog, checkInterval, load(catalog));
+    }
+
+    private static int hash(String groupId, String artifactId) {
+        int h = groupId.hashCode() * 31 + artifactId.hashCode();
+        // spread the bits, the table index only uses the low ones
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return versions of the artifact in catalog order, empty if the artifact is not in the catalog
+     */
+    public List<String> getVersions(String groupId, String artifactId) {
+        checkForChanges();
+        Snapshot current = snapshot;
+        int entry = current.find(groupId, artifactId);
+        if (entry < 0) {
+            return List.of();
+        }
+        int start = current.versionStart[entry];
+        String[] result = new String[current.versionStart[entry + 1] - start];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = current.versions[current.versionIds[start + i]];
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * @return first version of the artifact other than {@code debian}, null if there is none
+     */
+    public String getOriginalVersion(String groupId, String artifactId) {
+        checkForChanges();
+        Snapshot current = snapshot;
+        int entry = current.find(groupId, artifactId);
+        if (entry < 0) {
+            return null;
+        }
+        for (int i = current.versionStart[entry]; i < current.versionStart[entry + 1]; ++i) {
+            String version = current.versions[current.versionIds[i]];
+            if (!version.equals(DEBIAN_VERSION)) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return number of artifacts in the index
+     */
+    public int size() {
+        return snapshot.groupIds.length;
+    }
+
+    private void checkForChanges() {
+        if (System.nanoTime() - nextCheck < 0 || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        nextCheck = System.nanoTime() + checkInterval;
+        Thread.ofVirtual().name("catalog-refresh").start(() -> {
+            try {
+                refresh();
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Reloads the catalog if the file changed since it was loaded.
+     *
+     * @return true if the catalog was reloaded
+     */
+    boolean refresh() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(catalog, BasicFileAttributes.class);
+            Snapshot current = snapshot;
+            if (attributes.size() == current.size && attributes.lastModifiedTime().toMillis() == current.lastModified) {
+                return false;
+            }
+            snapshot = load(catalog);
+            return true;
+        } catch (IOException | SQLException e) {
+            logger.warn("Unable to reload artifact catalog {}: {}", catalog, e.getMessage());
+            return false;
+        }
+    }
+
+    private static Snapshot load(Path catalog) throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        BasicFileAttributes attributes = Files.readAttributes(catalog, BasicFileAttributes.class);
+        HashMap<String, String> strings = new HashMap<>();
+        HashMap<String, Integer> versionIndex = new HashMap<>();
+        ArrayList<String> versions = new ArrayList<>();
+        HashMap<String, Integer> artifactIndex = new HashMap<>();
+        ArrayList<String> groupIds = new ArrayList<>();
+        ArrayList<String> artifactIds = new ArrayList<>();
+        // artifact and version id of every row
+        int[] rowArtifacts = new int[1024];
+        int[] rowVersions = new int[1024];
+        int rows = 0;
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:file:" + catalog.toAbsolutePath().toUri().getRawPath() + "?mode=ro");
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT group_id, artifact_id, version FROM imported_artifacts")) {
+            while (rs.next()) {
+                String groupId = rs.getString(1);
+                String artifactId = rs.getString(2);
+                String version = rs.getString(3);
+                if (groupId == null || artifactId == null || version == null) {
+                    continue;
+                }
+                int artifact = artifactIndex.computeIfAbsent(groupId + ':' + artifactId, k -> {
+                    groupIds.add(strings.computeIfAbsent(groupId, g -> g));
+                    artifactIds.add(strings.computeIfAbsent(artifactId, a -> a));
+                    return groupIds.size() - 1;
+                });
+                int versionId = versionIndex.computeIfAbsent(version, k -> {
+                    versions.add(k);
+                    return versions.size() - 1;
+                });
+                if (rows == rowArtifacts.length) {
+                    rowArtifacts = Arrays.copyOf(rowArtifacts, rows * 2);
+                    rowVersions = Arrays.copyOf(rowVersions, rows * 2);
+                }
+                rowArtifacts[rows] = artifact;
+                rowVersions[rows] = versionId;
+                ++rows;
+            }
+        }
+
+        // counting sort of the rows by artifact, the catalog order of the versions is kept
+        int artifacts = groupIds.size();
+        int[] versionStart = new int[artifacts + 1];
+        for (int row = 0; row < rows; ++row) {
+            ++versionStart[rowArtifacts[row] + 1];
+        }
+        for (int i = 0; i < artifacts; ++i) {
+            versionStart[i + 1] += versionStart[i];
+        }
+        int[] next = Arrays.copyOf(versionStart, artifacts);
+        int[] versionIds = new int[rows];
+        for (int row = 0; row < rows; ++row) {
+            versionIds[next[rowArtifacts[row]]++] = rowVersions[row];
+        }
+
+        // load factor of at most one half keeps the probe sequences short
+        int[] slots = new int[Integer.highestOneBit(Math.max(1, artifacts)) * 4];
+        int mask = slots.length - 1;
+        for (int i = 0; i < artifacts; ++i) {
+            int slot = hash(groupIds.get(i), artifactIds.get(i)) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+        logger.info("Indexed {} artifacts ({} rows) of catalog {} in {} ms", artifacts, rows, catalog,
+                System.currentTimeMillis() - start);
+        return new Snapshot(attributes.size(), attributes.lastModifiedTime().toMillis(), slots,
+                groupIds.toArray(String[]::new), artifactIds.toArray(String[]::new), versionStart, versionIds,
+                versions.toArray(String[]::new));
+    }
+}
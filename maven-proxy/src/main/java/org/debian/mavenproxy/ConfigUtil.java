@@ -0,0 +1,49 @@
+package org.debian.mavenproxy;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers reading optional values from the parsed config.yaml.
+ */
+public class ConfigUtil {
+    public static Map<String, Object> getNode(Map<String, Object> config, String name) {
+        if (config == null) {
+            return Map.of();
+        }
+        // nodes are YAML mappings, their keys are always strings
+        @SuppressWarnings("unchecked")
+        Map<String, Object> node = (Map<String, Object>) config.get(name);
+        return node == null ? Map.of() : node;
+    }
+
+    public static int getInt(Map<String, Object> node, String key, int defaultValue) {
+        Object value = node.get(key);
+        return value == null ? defaultValue : ((Number) value).intValue();
+    }
+
+    public static long getLong(Map<String, Object> node, String key, long defaultValue) {
+        Object value = node.get(key);
+        return value == null ? defaultValue : ((Number) value).longValue();
+    }
+
+    public static boolean getBoolean(Map<String, Object> node, String key, boolean defaultValue) {
+        Object value = node.get(key);
+        return value == null ? defaultValue : (Boolean) value;
+    }
+
+    public static String getString(Map<String, Object> node, String key, String defaultValue) {
+        Object value = node.get(key);
+        return value == null ? defaultValue : (String) value;
+    }
+
+    public static List<String> getStringList(Map<String, Object> node, String key, List<String> defaultValue) {
+        Object value = node.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        @SuppressWarnings("unchecked")
+        List<String> list = (List<String>) value;
+        return list;
+    }
+}
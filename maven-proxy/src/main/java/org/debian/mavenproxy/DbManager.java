@@ -1,5 +1,8 @@
 package org.debian.mavenproxy;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -7,20 +10,69 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
 
 /**
  * Manages interactions with the SQLite database for logging and caching metadata.
  * It handles connection, table creation, and insertion of log data.
+ * Reads go through a connection shared by all request threads, access to it is synchronized.
+ * <p>
+ * Writes are queued and applied by a single writer thread on its own connection, so request
+ * threads never wait for a commit. The writer applies everything queued in one transaction,
+ * prepared statements are reused. Reads see the committed state, in write-ahead log mode they
+ * neither wait for the writer nor apply the queued writes; callers needing their own writes
+ * back keep them in memory.
+ * When the queue is full further writes are dropped, the data written here is rebuilt
+ * by the proxy when it is missing.
  */
 public class DbManager {
 
     private static final Logger logger = LoggerFactory.getLogger(DbManager.class);
+    public static final int DEFAULT_QUEUE_CAPACITY = 16384;
+    private static final int MAX_BATCH = 1024;
+    // writes are collected for this long before a transaction is started
+    private static final long LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
     private final String dbPath;
+    private final String catalogPath;
+    private final int queueCapacity;
+    // used by the writer thread, guarded by writeLock
     private Connection connection;
+    // used by the request threads, guarded by this
+    private Connection readConnection;
+    private final Object writeLock = new Object();
+    private final Object catalogLock = new Object();
+    private CatalogIndex catalogIndex;
+    private volatile boolean catalogOpened;
+    // debian_to_version is kept in memory, lookups never wait for the database
+    private final ConcurrentHashMap<String, String> debianToVersion = new ConcurrentHashMap<>();
+    private final HashMap<String, PreparedStatement> statements = new HashMap<>();
+    private final HashMap<String, PreparedStatement> readStatements = new HashMap<>();
+    private final ConcurrentLinkedQueue<Write> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * A write applied by the writer thread, with writeLock held.
+     */
+    private interface Write {
+        void apply() throws SQLException;
+    }
 
     /**
      * Constructs a DbManager with the specified database file path.
@@ -28,7 +80,24 @@ public class DbManager {
      * @param dbPath The file path for the SQLite database.
      */
     public DbManager(String dbPath) {
+        this(dbPath, null, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param dbPath database storing the state written by the proxy
+     * @param catalogPath catalog of the artifacts imported from Debian, read into a {@link CatalogIndex}, may be null
+     */
+    public DbManager(String dbPath, String catalogPath) {
+        this(dbPath, catalogPath, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity maximum number of writes waiting for the writer thread
+     */
+    public DbManager(String dbPath, String catalogPath, int queueCapacity) {
         this.dbPath = dbPath;
+        this.catalogPath = catalogPath;
+        this.queueCapacity = queueCapacity;
     }
 
     /**
@@ -40,9 +109,21 @@ public class DbManager {
             Class.forName("org.sqlite.JDBC");
             // Establish a connection to the database
             connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+            try (Statement stmt = connection.createStatement()) {
+                // commits append to the write-ahead log without waiting for an fsync
+                stmt.execute("PRAGMA journal_mode=WAL");
+                stmt.execute("PRAGMA synchronous=NORMAL");
+            }
             connection.setAutoCommit(false);
 
             createTables();
+            loadDebianToVersion();
+            connection.commit();
+            SQLiteConfig readConfig = new SQLiteConfig();
+            readConfig.setReadOnly(true);
+            readConnection = DriverManager.getConnection("jdbc:sqlite:" + dbPath, readConfig.toProperties());
+            running = true;
+            writer = Thread.ofPlatform().name("db-writer").daemon().start(this::writeLoop);
             logger.info("SQLite database initialized at: {}", dbPath);
         } catch (ClassNotFoundException e) {
             logger.error("SQLite JDBC driver not found: {}", e.getMessage(), e);
@@ -53,13 +134,64 @@ public class DbManager {
         }
     }
 
+    /**
+     * @return index of the catalog, built by the first lookup so that a proxy not asking for
+     * catalog versions never reads the catalog, null if there is no usable catalog
+     */
+    private CatalogIndex catalogIndex() {
+        if (!catalogOpened) {
+            synchronized (catalogLock) {
+                if (!catalogOpened) {
+                    catalogIndex = openCatalog();
+                    catalogOpened = true;
+                }
+            }
+        }
+        return catalogIndex;
+    }
+
+    /**
+     * Indexes the catalog, it is read by {@link CatalogIndex} and never opened by the
+     * connections of the state database.
+     */
+    private CatalogIndex openCatalog() {
+        if (catalogPath == null) {
+            return null;
+        }
+        Path catalog = Path.of(catalogPath).toAbsolutePath();
+        if (!Files.isRegularFile(catalog)) {
+            logger.warn("Artifact catalog {} does not exist", catalog);
+            return null;
+        }
+        try {
+            return CatalogIndex.open(catalog, CatalogIndex.DEFAULT_CHECK_INTERVAL);
+        } catch (IOException | SQLException e) {
+            logger.warn("Unable to index artifact catalog {}: {}", catalog, e.getMessage());
+            return null;
+        }
+    }
+
+    private void loadDebianToVersion() throws SQLException {
+        // INSERT OR REPLACE gives a stored row a new rowid, the version stored last wins
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT groupId, artifactId, version FROM debian_to_version ORDER BY rowid")) {
+            while (rs.next()) {
+                debianToVersion.put(rs.getString(1) + ":" + rs.getString(2), rs.getString(3));
+            }
+        }
+    }
+
     private void createTables() throws SQLException {
         try (Statement stmt = connection.createStatement()) {
             // Table for logging unique artifacts requested
             stmt.execute("CREATE TABLE IF NOT EXISTS blacklist (" +
                         "url TEXT," +
+                        "expires INTEGER," + // expiry time in milliseconds, NULL never expires
                         "PRIMARY KEY(url)"+
                     ")");
+            if (!hasColumn(stmt, "blacklist", "expires")) {
+                stmt.execute("ALTER TABLE blacklist ADD COLUMN expires INTEGER");
+            }
             stmt.execute("CREATE TABLE IF NOT EXISTS remote_artifacts (" +
                          "groupId TEXT," +
                          "artifactId TEXT," +
@@ -82,15 +214,145 @@ public class DbManager {
                     "version TEXT," +
                     "PRIMARY KEY(groupId, artifactId, version)" +
                     ")");
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS checksums (" +
+                    "path TEXT," + // absolute path of the hashed file
+                    "size INTEGER," +
+                    "mtime INTEGER," + // modification time in milliseconds
+                    "algorithm TEXT," + // checksum file extension, e.g. sha1
+                    "digest TEXT," +
+                    "PRIMARY KEY(path, algorithm)" +
+                    ")");
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS served_files (" +
+                    "path TEXT," + // request path relative to the repository root
+                    "tier TEXT NOT NULL," + // repository the file was first obtained from
+                    "PRIMARY KEY(path)" +
+                    ")");
+        }
+    }
+
+    private static boolean hasColumn(Statement stmt, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private PreparedStatement statement(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * @return statement of the read connection, the lock on the DbManager guards the read
+     * connection and its statements and is held by the caller
+     */
+    private PreparedStatement readStatement(String sql) throws SQLException {
+        PreparedStatement statement = readStatements.get(sql);
+        if (statement == null) {
+            statement = readConnection.prepareStatement(sql);
+            readStatements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    private void enqueue(Write write) {
+        int size = queued.incrementAndGet();
+        if (size > queueCapacity) {
+            queued.decrementAndGet();
+            if (dropped.getAndIncrement() == 0) {
+                logger.warn("Database write queue is full, dropping writes");
+            }
+            return;
+        }
+        pending.add(write);
+        Thread thread = writer;
+        // the writer only sleeps on an empty queue
+        if (thread != null && size == 1) {
+            LockSupport.unpark(thread);
         }
     }
 
-    public boolean isBlacklisted(String url)  {
-        String sql = "SELECT COUNT(*) FROM blacklist WHERE url = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+    private void writeLoop() {
+        while (running || !pending.isEmpty()) {
+            if (pending.isEmpty()) {
+                LockSupport.park(this);
+                continue;
+            }
+            if (running && queued.get() < MAX_BATCH) {
+                LockSupport.parkNanos(this, LINGER_NANOS);
+            }
+            synchronized (writeLock) {
+                writePending();
+            }
+        }
+    }
+
+    /**
+     * Applies up to {@link #MAX_BATCH} queued writes in one transaction, the caller holds the write lock.
+     *
+     * @return number of writes applied
+     */
+    private int writePending() {
+        int count = 0;
+        Write write;
+        while (count < MAX_BATCH && (write = pending.poll()) != null) {
+            queued.decrementAndGet();
+            ++count;
+            try {
+                write.apply();
+            } catch (SQLException e) {
+                logger.warn("Error writing to database, {}", e.getMessage());
+            }
+        }
+        if (count > 0) {
+            try {
+                connection.commit();
+            } catch (SQLException e) {
+                logger.warn("Error committing {} writes, {}", count, e.getMessage());
+                try {
+                    connection.rollback();
+                } catch (SQLException suppressed) {
+                    logger.debug("rollback failed", suppressed);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Applies all queued writes, the caller holds the write lock.
+     */
+    private void flushPending() {
+        while (!pending.isEmpty() && writePending() > 0) {
+            // next batch
+        }
+    }
+
+    /**
+     * @return number of writes dropped because the queue was full
+     */
+    public long getDroppedWrites() {
+        return dropped.get();
+    }
+
+    public synchronized boolean isBlacklisted(String url)  {
+        String sql = "SELECT COUNT(*) FROM blacklist WHERE url = ? AND (expires IS NULL OR expires > ?)";
+        try {
+            PreparedStatement pstmt = readStatement(sql);
             pstmt.setString(1, url);
+            pstmt.setLong(2, System.currentTimeMillis());
             try (ResultSet q = pstmt.executeQuery()) {
-                return q.getInt(1) > 0;
+                return q.next() && q.getInt(1) > 0;
             }
         } catch (SQLException e) {
             logger.warn("Error quering blacklist for {}, {}", url, e.getMessage());
@@ -98,38 +360,148 @@ public class DbManager {
         return true;
     }
 
-    public void blacklist(String url)  {
-        String sql = "INSERT INTO blacklist(url) VALUES(?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, url);
-            pstmt.executeUpdate();
-            connection.commit();
+    /**
+     * Reads the blacklist entries that have not expired yet.
+     *
+     * @return map of url to expiry time in milliseconds, {@link Long#MAX_VALUE} if the entry never expires
+     */
+    public synchronized Map<String, Long> loadBlacklist() {
+        String sql = "SELECT url, expires FROM blacklist WHERE expires IS NULL OR expires > ?";
+        HashMap<String, Long> entries = new HashMap<>();
+        try {
+            PreparedStatement pstmt = readStatement(sql);
+            pstmt.setLong(1, System.currentTimeMillis());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    long expires = rs.getLong(2);
+                    entries.put(rs.getString(1), rs.wasNull() ? Long.MAX_VALUE : expires);
+                }
+            }
         } catch (SQLException e) {
-            logger.warn("Error updating blacklist for {}, {}", url, e.getMessage());
+            logger.warn("Error loading blacklist, {}", e.getMessage());
         }
+        return entries;
+    }
+
+    public void blacklist(String url, long expires)  {
+        enqueue(() -> {
+            PreparedStatement pstmt = statement("INSERT OR REPLACE INTO blacklist(url, expires) VALUES(?, ?)");
+            pstmt.setString(1, url);
+            pstmt.setLong(2, expires);
+            pstmt.executeUpdate();
+        });
     }
 
     public void logUniqueArtifact(String groupId, String artifactId, String version, String requestUrl, String remoteUrl) {
-        // Use INSERT OR IGNORE to only log unique URLs, preventing duplicates
-        String sql = "INSERT INTO remote_artifacts(groupId, artifactId, version, requestUrl, remoteUrl) VALUES(?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        enqueue(() -> {
+            // Use INSERT OR IGNORE to only log unique URLs, preventing duplicates
+            PreparedStatement pstmt = statement("INSERT OR IGNORE INTO remote_artifacts(groupId, artifactId, version, requestUrl, remoteUrl) VALUES(?, ?, ?, ?, ?)");
             pstmt.setString(1, groupId);
             pstmt.setString(2, artifactId);
             pstmt.setString(3, version);
             pstmt.setString(4, requestUrl);
             pstmt.setString(5, remoteUrl);
-            pstmt.executeUpdate();
-            connection.commit();
-            logger.info("Logged unique artifact: {} ({} {} {})", remoteUrl, groupId, artifactId, version);
+            if (pstmt.executeUpdate() > 0) {
+                logger.info("Logged unique artifact: {} ({} {} {})", remoteUrl, groupId, artifactId, version);
+            }
+        });
+    }
+
+    /**
+     * Summarizes which remote served the artifacts of each groupId.
+     */
+    public synchronized List<RemoteRoute> loadRemoteRoutes() {
+        String sql = "SELECT groupId, remoteUrl, COUNT(*) FROM remote_artifacts GROUP BY groupId, remoteUrl";
+        ArrayList<RemoteRoute> routes = new ArrayList<>();
+        try (Statement stmt = readConnection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                routes.add(new RemoteRoute(rs.getString(1), rs.getString(2), rs.getInt(3)));
+            }
         } catch (SQLException e) {
-            logger.error("Error logging unique artifact for {}: {}", requestUrl, e.getMessage());
+            logger.warn("Error loading remote routes, {}", e.getMessage());
         }
+        return routes;
+    }
+
+    public record RemoteRoute(String groupId, String remoteUrl, int count) {
+    }
+
+    /**
+     * Reads the checksums stored for a file. Entries recorded for a different size or
+     * modification time belong to an older version of the file and are not returned.
+     *
+     * @return map of algorithm to hex digest, empty if the file was not hashed
+     */
+    public synchronized Map<String, String> findChecksums(String path, long size, long mtime) {
+        String sql = "SELECT algorithm, digest FROM checksums WHERE path = ? AND size = ? AND mtime = ?";
+        HashMap<String, String> digests = new HashMap<>();
+        try {
+            PreparedStatement pstmt = readStatement(sql);
+            pstmt.setString(1, path);
+            pstmt.setLong(2, size);
+            pstmt.setLong(3, mtime);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    digests.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("Error reading checksums of {}, {}", path, e.getMessage());
+        }
+        return digests;
+    }
+
+    public void storeChecksums(String path, long size, long mtime, Map<String, String> digests) {
+        Map<String, String> copy = Map.copyOf(digests);
+        enqueue(() -> {
+            PreparedStatement delete = statement("DELETE FROM checksums WHERE path = ?");
+            delete.setString(1, path);
+            delete.executeUpdate();
+            PreparedStatement insert = statement("INSERT INTO checksums(path, size, mtime, algorithm, digest) VALUES(?, ?, ?, ?, ?)");
+            for (var digest : copy.entrySet()) {
+                insert.setString(1, path);
+                insert.setLong(2, size);
+                insert.setLong(3, mtime);
+                insert.setString(4, digest.getKey());
+                insert.setString(5, digest.getValue());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        });
+    }
+
+    /**
+     * Records a file served to a client, a file already recorded keeps its tier.
+     */
+    public void recordServedFile(String path, String tier) {
+        enqueue(() -> {
+            PreparedStatement pstmt = statement("INSERT OR IGNORE INTO served_files (path, tier) VALUES (?, ?)");
+            pstmt.setString(1, path);
+            pstmt.setString(2, tier);
+            pstmt.executeUpdate();
+        });
+    }
 
+    /**
+     * @return paths of the files served by earlier runs and their tiers, in the order they were first served
+     */
+    public synchronized Map<String, String> loadServedFiles() {
+        LinkedHashMap<String, String> files = new LinkedHashMap<>();
+        try (Statement stmt = readConnection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT path, tier FROM served_files ORDER BY rowid")) {
+            while (rs.next()) {
+                files.put(rs.getString(1), rs.getString(2));
+            }
+        } catch (SQLException e) {
+            logger.warn("Error loading served files, {}", e.getMessage());
+        }
+        return files;
     }
 
-    public boolean hasArtifact(String groupId, String artifactId, String version, String requestUrl, String remoteUrl) throws SQLException {
+    public synchronized boolean hasArtifact(String groupId, String artifactId, String version, String requestUrl, String remoteUrl) throws SQLException {
         String sql = "Select COUNT(*) FROM remote_artifacts WHERE groupId=? AND artifactId=? AND version=? AND requestUrl=? AND remoteUrl=? ";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = readConnection.prepareStatement(sql)) {
             pstmt.setString(1, groupId);
             pstmt.setString(2, artifactId);
             pstmt.setString(3, version);
@@ -143,70 +515,95 @@ public class DbManager {
         return false;
     }
 
+    /**
+     * Applies the queued writes and closes the connection.
+     */
     public void close() {
-        if (connection != null) {
+        Thread thread = writer;
+        if (thread != null) {
+            running = false;
+            LockSupport.unpark(thread);
             try {
-                connection.close();
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        closeConnection();
+    }
+
+    private void closeConnection() {
+        synchronized (this) {
+            if (readConnection != null) {
+                close(readConnection, readStatements);
+            }
+        }
+        synchronized (writeLock) {
+            if (connection != null) {
+                flushPending();
+                close(connection, statements);
                 logger.info("SQLite database connection closed.");
-            } catch (SQLException e) {
-                logger.error("Error closing database connection: {}", e.getMessage(), e);
             }
         }
     }
 
-    public List<String> findVersion(String groupId, String artifactId) throws SQLException {
-        String sql = "SELECT VERSION from imported_artifacts where group_id = ? and artifact_id = ?";
-        ArrayList<String> versions = new ArrayList<>();
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, groupId);
-            pstmt.setString(2, artifactId);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                versions.add(rs.getString(1));
+    private static void close(Connection connection, HashMap<String, PreparedStatement> statements) {
+        for (var statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.debug("Error closing statement", e);
             }
         }
-        return versions;
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error("Error closing database connection: {}", e.getMessage(), e);
+        }
     }
 
-    public void addMapping(String groupId, String artifactId, String origVersion, String version) throws SQLException  {
-        String sql = "INSERT INTO artifacts_version_map (artifactId, groupId, version, foundVersion) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+    /**
+     * @return versions of the artifact in the catalog, answered from the {@link CatalogIndex}
+     */
+    public List<String> findVersion(String groupId, String artifactId) {
+        CatalogIndex index = catalogIndex();
+        return index == null ? List.of() : index.getVersions(groupId, artifactId);
+    }
+
+    public void addMapping(String groupId, String artifactId, String origVersion, String version) {
+        enqueue(() -> {
+            PreparedStatement pstmt = statement("INSERT OR REPLACE INTO artifacts_version_map (groupId, artifactId, version, foundVersion) VALUES (?, ?, ?, ?)");
             pstmt.setString(1, groupId);
             pstmt.setString(2, artifactId);
             pstmt.setString(3, origVersion);
             pstmt.setString(4, version);
-        }
+            pstmt.executeUpdate();
+        });
     }
 
-    public void storeDebianToVersion(String groupId, String artifactId, String version) throws SQLException  {
-        String sql = "INSERT INTO debian_to_version (artifactId, groupId, version) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+    public void storeDebianToVersion(String groupId, String artifactId, String version) {
+        debianToVersion.put(groupId + ":" + artifactId, version);
+        enqueue(() -> {
+            PreparedStatement pstmt = statement("INSERT OR REPLACE INTO debian_to_version (groupId, artifactId, version) VALUES (?, ?, ?)");
             pstmt.setString(1, groupId);
             pstmt.setString(2, artifactId);
             pstmt.setString(3, version);
-        }
+            pstmt.executeUpdate();
+        });
     }
 
-    public String readOriginalVersion(String groupId, String artifactId) throws SQLException {
-        String sql = "SELECT VERSION from debian_to_Version WHERE groupId = ? and artifactId = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, groupId);
-            pstmt.setString(2, artifactId);
-            ResultSet rs = pstmt.executeQuery();
-            if (!rs.next()) {
-                // try to read imported_artifacts
-                String importedSql = "SELECT VERSION from imported_artifacts WHERE group_id = ? and artifact_id = ? and version <> 'debian'";
-                try (PreparedStatement importedPstmt = connection.prepareStatement(importedSql)) {
-                    importedPstmt.setString(1, groupId);
-                    importedPstmt.setString(2, artifactId);
-                    ResultSet rsImported = importedPstmt.executeQuery();
-                    if (rsImported.next()) {
-                        return rsImported.getString(1);
-                    }
-                }
-                return null;
-            }
-            return rs.getString(1);
+    /**
+     * @return version stored with {@link #storeDebianToVersion}, otherwise the first catalog
+     * version other than debian, null if neither is known
+     */
+    public String readOriginalVersion(String groupId, String artifactId) {
+        String version = debianToVersion.get(groupId + ":" + artifactId);
+        if (version != null) {
+            return version;
         }
+        CatalogIndex index = catalogIndex();
+        return index == null ? null : index.getOriginalVersion(groupId, artifactId);
     }
 }
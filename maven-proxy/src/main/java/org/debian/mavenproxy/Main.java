@@ -39,9 +39,9 @@ public class Main {
         String localRepoPath = (String) config.get("maven-proxy-cache");
         String debianRepoPath = (String) config.get("debian-repo");
 
-        String dbFilePath = "maven_proxy" + System.currentTimeMillis() + ".db";
-        // will fail to copy over the existing file
-        Files.copy(Paths.get("artifacts.db"), Paths.get(dbFilePath));
+        // the catalog is only read, the proxy writes to its own database
+        String catalogFilePath = ConfigUtil.getString(config, "catalog-db", "artifacts.db");
+        String dbFilePath = ConfigUtil.getString(config, "state-db", "maven-proxy-state.db");
         List<String> remoteRepoUrls = (List<String>) config.get("remotes");
 
         // Validate local repository path
@@ -59,12 +59,13 @@ public class Main {
         logger.info("Starting Maven Proxy with configurations:");
         logger.info("  Port: {}", port);
         logger.info("  Local Repository Path: {}", repoPath.toAbsolutePath());
+        logger.info("  Artifact Catalog: {}", Paths.get(catalogFilePath).toAbsolutePath());
         logger.info("  Database File: {}", Paths.get(dbFilePath).toAbsolutePath());
 
         DbManager dbManager = null;
         try {
             // Initialize DbManager
-            dbManager = new DbManager(dbFilePath);
+            dbManager = new DbManager(dbFilePath, catalogFilePath);
             dbManager.initialize();
 
             // Initialize RepositoryManager
@@ -74,7 +75,9 @@ public class Main {
                             mapArtifacts  ? debianRepoPath : null,
                             remoteRepoUrls,
                             ignoreLines,
-                            replaceLines);
+                            replaceLines,
+                            config,
+                            dbManager);
             ProxyServer proxyServer = new ProxyServer(repositoryManager,  port);
             proxyServer.start();
 
@@ -88,11 +91,18 @@ public class Main {
             } else {
                 throw new RuntimeException("Unsupported build system");
             }
+            if (ConfigUtil.getBoolean(ConfigUtil.getNode(config, "manifest"), "warm-up", false)) {
+                repositoryManager.warmUp();
+            }
             logger.info("Maven Proxy Server is running. Press any to stop.");
+            long buildStart = System.nanoTime();
             if (executor.run() != 0 ) {
                 System.err.println("Build failed");
             }
+            repositoryManager.getProfiler().writeReport(System.nanoTime() - buildStart);
             proxyServer.shutdown();
+            // writes are queued, close applies the remaining ones
+            dbManager.close();
         } catch (IOException e) {
             logger.error("Failed to start Maven Proxy Server: {}", e.getMessage(), e);
             dbManager.close();
@@ -3,10 +3,15 @@ package org.debian.mavenproxy;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.bootstrap.HttpServer;
 import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpRequestHandler;
+import org.debian.mavenproxy.request.ConditionalRequest;
 import org.debian.mavenproxy.request.GetRepositoryResponse;
 import org.debian.mavenproxy.request.HeadRepositoryResponse;
 import org.debian.mavenproxy.request.RepositoryManager;
@@ -14,11 +19,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * HTTP front end of the proxy.
+ * The underlying {@link HttpServer} serves every client connection on its own worker thread,
+ * so the handler must not serialize requests: a cache hit in the local repository should never
+ * wait behind a slow upstream download running on another connection.
+ * The request metrics are served in the Prometheus text format at {@code /metrics}.
+ */
 public class ProxyServer implements HttpRequestHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(ProxyServer.class);
+    // parallel builds open many connections at once, do not drop them while workers spin up
+    private static final int BACKLOG_SIZE = 128;
+    private static final String METRICS_PATH = "/metrics";
+    private static final ContentType METRICS_CONTENT_TYPE = ContentType.create("text/plain", StandardCharsets.UTF_8)
+            .withParameters(new BasicNameValuePair("version", "0.0.4"));
     private final int port;
     private final RepositoryManager repositoryManager;
     private HttpServer server;
@@ -34,8 +52,14 @@ public class ProxyServer implements HttpRequestHandler {
     }
 
     public void start() throws IOException {
+        SocketConfig socketConfig = SocketConfig.custom()
+                .setTcpNoDelay(true)
+                .setSoKeepAlive(true)
+                .setBacklogSize(BACKLOG_SIZE)
+                .build();
         server = ServerBootstrap.bootstrap()
             .setListenerPort(port)
+            .setSocketConfig(socketConfig)
             .setHttpProcessor(null) // Use default HTTP processor
             .registerHandler("*", this) // Register this class as the handler for all paths
             .create();
@@ -62,10 +86,16 @@ public class ProxyServer implements HttpRequestHandler {
     }
 
     @Override
-    public synchronized void handle(HttpRequest request, HttpResponse response, HttpContext context) throws IOException {
+    public void handle(HttpRequest request, HttpResponse response, HttpContext context) throws IOException {
         String requestPath = request.getRequestLine().getUri();
+        if (requestPath.equals(METRICS_PATH) && request.getRequestLine().getMethod().equalsIgnoreCase("GET")) {
+            response.setStatusCode(HttpStatus.SC_OK);
+            response.setEntity(new StringEntity(repositoryManager.getMetrics().render(), METRICS_CONTENT_TYPE));
+            return;
+        }
+        ConditionalRequest conditions = ConditionalRequest.of(request);
         if (request.getRequestLine().getMethod().equalsIgnoreCase("HEAD")) {
-            repositoryManager.handleRequest(requestPath, response, headRepositoryResponse);
+            repositoryManager.handleRequest(requestPath, conditions, response, headRepositoryResponse);
             return;
         }
 
@@ -73,6 +103,6 @@ public class ProxyServer implements HttpRequestHandler {
             response.setStatusCode(HttpStatus.SC_METHOD_NOT_ALLOWED);
             return;
         }
-        repositoryManager.handleRequest(requestPath, response, getRepositoryResponse);
+        repositoryManager.handleRequest(requestPath, conditions, response, getRepositoryResponse);
     }
 }
@@ -0,0 +1,162 @@
+package org.debian.mavenproxy;
+
+import org.debian.maven.repo.Dependency;
+import org.debian.maven.repo.DependencyRule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Indexed form of a list of {@link DependencyRule}s. Rules with a literal groupId (and artifactId)
+ * are kept in hash tables, glob groupIds in a trie keyed by their literal prefix, only regular
+ * expression rules are checked for every dependency. Candidates are confirmed with
+ * {@link DependencyRule#matches(Dependency)} and decisions are memoized per coordinate.
+ * <p>
+ * When several rules match, the first one in declaration order wins.
+ */
+public class RuleMatcher {
+    public static final int DEFAULT_MEMO_SIZE = 4096;
+
+    private record IndexedRule(int order, DependencyRule rule) {
+    }
+
+    private static class TrieNode {
+        final HashMap<Character, TrieNode> children = new HashMap<>();
+        final List<IndexedRule> rules = new ArrayList<>();
+    }
+
+    private final HashMap<String, List<IndexedRule>> byGroupArtifact = new HashMap<>();
+    private final HashMap<String, List<IndexedRule>> byGroup = new HashMap<>();
+    private final TrieNode groupPrefixes = new TrieNode();
+    private final List<IndexedRule> unindexed = new ArrayList<>();
+    private final int ruleCount;
+    private final Map<String, Optional<DependencyRule>> memo;
+
+    public RuleMatcher(List<String> rules) {
+        this(rules, DEFAULT_MEMO_SIZE);
+    }
+
+    /**
+     * @param rules rule definitions as found in the Debian rule files, may be null
+     * @param memoSize maximum number of memoized decisions
+     */
+    public RuleMatcher(List<String> rules, int memoSize) {
+        this.memo = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Optional<DependencyRule>> eldest) {
+                return size() > memoSize;
+            }
+        };
+        int order = 0;
+        if (rules != null) {
+            for (var definition : rules) {
+                if (definition.isBlank() || definition.trim().startsWith("#")) {
+                    continue;
+                }
+                add(new IndexedRule(order++, new DependencyRule(definition)), definition.trim().split("\\s+"));
+            }
+        }
+        this.ruleCount = order;
+    }
+
+    private void add(IndexedRule rule, String[] patterns) {
+        String group = patterns[0];
+        String artifact = patterns.length > 1 ? patterns[1] : "*";
+        if (isRegex(group)) {
+            unindexed.add(rule);
+        } else if (isLiteral(group)) {
+            if (isLiteral(artifact)) {
+                byGroupArtifact.computeIfAbsent(group + ":" + artifact, k -> new ArrayList<>()).add(rule);
+            } else {
+                byGroup.computeIfAbsent(group, k -> new ArrayList<>()).add(rule);
+            }
+        } else {
+            TrieNode node = groupPrefixes;
+            for (char c : group.substring(0, group.indexOf('*')).toCharArray()) {
+                node = node.children.computeIfAbsent(c, k -> new TrieNode());
+            }
+            node.rules.add(rule);
+        }
+    }
+
+    private static boolean isRegex(String pattern) {
+        return pattern.startsWith("s/");
+    }
+
+    private static boolean isLiteral(String pattern) {
+        return !isRegex(pattern) && pattern.indexOf('*') < 0;
+    }
+
+    public boolean isEmpty() {
+        return ruleCount == 0;
+    }
+
+    public boolean matches(Dependency dependency) {
+        return findRule(dependency) != null;
+    }
+
+    /**
+     * @return dependency rewritten by the first matching rule, the dependency itself if no rule matches
+     */
+    public Dependency apply(Dependency dependency) {
+        DependencyRule rule = findRule(dependency);
+        return rule == null ? dependency : rule.apply(dependency);
+    }
+
+    /**
+     * @return first matching rule or null
+     */
+    public DependencyRule findRule(Dependency dependency) {
+        if (ruleCount == 0) {
+            return null;
+        }
+        String key = dependency.getGroupId() + ":" + dependency.getArtifactId() + ":" + dependency.getType() + ":" + dependency.getVersion();
+        synchronized (memo) {
+            Optional<DependencyRule> decision = memo.get(key);
+            if (decision != null) {
+                return decision.orElse(null);
+            }
+        }
+        DependencyRule rule = lookup(dependency);
+        synchronized (memo) {
+            memo.put(key, Optional.ofNullable(rule));
+        }
+        return rule;
+    }
+
+    private DependencyRule lookup(Dependency dependency) {
+        IndexedRule best = null;
+        String groupId = dependency.getGroupId();
+        best = firstMatch(byGroupArtifact.get(groupId + ":" + dependency.getArtifactId()), dependency, best);
+        best = firstMatch(byGroup.get(groupId), dependency, best);
+        TrieNode node = groupPrefixes;
+        best = firstMatch(node.rules, dependency, best);
+        for (int i = 0; i < groupId.length() && node != null; ++i) {
+            node = node.children.get(groupId.charAt(i));
+            if (node != null) {
+                best = firstMatch(node.rules, dependency, best);
+            }
+        }
+        best = firstMatch(unindexed, dependency, best);
+        return best == null ? null : best.rule();
+    }
+
+    private static IndexedRule firstMatch(List<IndexedRule> candidates, Dependency dependency, IndexedRule best) {
+        if (candidates == null) {
+            return best;
+        }
+        for (var candidate : candidates) {
+            if (best != null && candidate.order() > best.order()) {
+                break;
+            }
+            if (candidate.rule().matches(dependency)) {
+                return candidate;
+            }
+        }
+        return best;
+    }
+}
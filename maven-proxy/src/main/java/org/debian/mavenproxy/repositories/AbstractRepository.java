@@ -3,6 +3,10 @@ package org.debian.mavenproxy.repositories;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 public abstract class AbstractRepository {
     private final String base;
@@ -13,14 +17,47 @@ public abstract class AbstractRepository {
 
     public abstract RepositoryContent getArtifact(String groupId, String artifactId, String version, String fileName) throws FileNotFoundException;
 
-    public int getArtifactSize(String groupId, String artifactId, String version, String fileName) throws FileNotFoundException {
-        try {
-            return getArtifact(groupId, artifactId, version, fileName).getInputStream().readAllBytes().length;
+    /**
+     * Returns size and modification time of the artifact. Repositories should override this
+     * with a lookup that does not read the artifact, the default implementation streams it.
+     */
+    public ArtifactMetadata getArtifactMetadata(String groupId, String artifactId, String version, String fileName) throws FileNotFoundException {
+        try (InputStream is = getArtifact(groupId, artifactId, version, fileName).getInputStream()) {
+            return new ArtifactMetadata(is.transferTo(OutputStream.nullOutputStream()), -1);
+        } catch (FileNotFoundException e) {
+            throw e;
         } catch (IOException e) {
             throw new FileNotFoundException(e.getMessage());
         }
     }
 
+    /**
+     * Returns a checksum of the artifact without reading the artifact itself.
+     *
+     * @return hex digest
+     * @throws FileNotFoundException if the repository has no stored checksum for the artifact
+     */
+    public String getChecksum(String groupId, String artifactId, String version, String fileName, ChecksumAlgorithm algorithm) throws FileNotFoundException {
+        throw new FileNotFoundException(fileName + "." + algorithm.getExtension());
+    }
+
+    /**
+     * Answers the metadata of a file with a single stat.
+     */
+    protected static ArtifactMetadata readMetadata(Path input) throws FileNotFoundException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(input, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                throw new FileNotFoundException(input.toString());
+            }
+            return new ArtifactMetadata(attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new FileNotFoundException(input + ": " + e.getMessage());
+        }
+    }
+
     protected String getBase() {
         return this.base;
     }
@@ -0,0 +1,10 @@
+package org.debian.mavenproxy.repositories;
+
+/**
+ * Artifact attributes that can be answered without reading the artifact.
+ *
+ * @param size size in bytes or -1 if unknown
+ * @param lastModified modification time in milliseconds since the epoch or -1 if unknown
+ */
+public record ArtifactMetadata(long size, long lastModified) {
+}
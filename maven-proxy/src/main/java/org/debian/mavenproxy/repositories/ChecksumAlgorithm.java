@@ -0,0 +1,72 @@
+package org.debian.mavenproxy.repositories;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checksums published next to the artifacts of a maven repository.
+ */
+public enum ChecksumAlgorithm {
+    SHA1("sha1", "SHA-1"),
+    MD5("md5", "MD5"),
+    SHA256("sha256", "SHA-256"),
+    SHA512("sha512", "SHA-512");
+
+    private final String extension;
+    private final String digestName;
+
+    ChecksumAlgorithm(String extension, String digestName) {
+        this.extension = extension;
+        this.digestName = digestName;
+    }
+
+    /**
+     * @return file extension of the checksum sidecar without the leading dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(digestName);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Missing digest " + digestName, e);
+        }
+    }
+
+    /**
+     * @return algorithm of a checksum file or null if the file is not a checksum
+     */
+    public static ChecksumAlgorithm fromFileName(String fileName) {
+        for (var algorithm : values()) {
+            if (fileName.endsWith("." + algorithm.extension)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    public static boolean isChecksum(String fileName) {
+        return fromFileName(fileName) != null;
+    }
+
+    public static List<ChecksumAlgorithm> parse(List<String> names) {
+        ArrayList<ChecksumAlgorithm> algorithms = new ArrayList<>();
+        for (var name : names) {
+            ChecksumAlgorithm found = null;
+            for (var algorithm : values()) {
+                if (algorithm.extension.equalsIgnoreCase(name) || algorithm.digestName.equalsIgnoreCase(name)) {
+                    found = algorithm;
+                }
+            }
+            if (found == null) {
+                throw new RuntimeException("Unsupported checksum algorithm " + name);
+            }
+            algorithms.add(found);
+        }
+        return algorithms;
+    }
+}
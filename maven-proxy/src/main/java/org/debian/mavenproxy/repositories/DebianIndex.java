@@ -0,0 +1,306 @@
+package org.debian.mavenproxy.repositories;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Versions available in the Debian maven repository, keyed by groupId and artifactId.
+ * The tree is scanned once at startup and kept current by a {@link WatchService}, so
+ * that resolving a version does not touch the filesystem.
+ * <p>
+ * A version is indexed when its directory holds a file named {@code artifactId-version.*}.
+ */
+public class DebianIndex implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DebianIndex.class);
+    public static final String DEBIAN_VERSION = "debian";
+
+    private final Path base;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // artifact directory -> key of its entry, sorted so that the artifacts below a directory are a range
+    private final ConcurrentSkipListMap<String, String> directories = new ConcurrentSkipListMap<>();
+    private WatchService watchService;
+
+    /**
+     * @param versions versions sorted in maven order, excluding {@link #DEBIAN_VERSION}
+     */
+    private record Entry(Path directory, List<String> versions, boolean debian) {
+        Entry with(String version) {
+            if (DEBIAN_VERSION.equals(version)) {
+                return new Entry(directory, versions, true);
+            }
+            if (versions.contains(version)) {
+                return this;
+            }
+            ArrayList<String> updated = new ArrayList<>(versions);
+            updated.add(version);
+            updated.sort(MavenVersionComparator.INSTANCE);
+            return new Entry(directory, List.copyOf(updated), debian);
+        }
+
+        Entry without(String version) {
+            if (DEBIAN_VERSION.equals(version)) {
+                return new Entry(directory, versions, false);
+            }
+            ArrayList<String> updated = new ArrayList<>(versions);
+            updated.remove(version);
+            return new Entry(directory, List.copyOf(updated), debian);
+        }
+
+        boolean isEmpty() {
+            return versions.isEmpty() && !debian;
+        }
+    }
+
+    public DebianIndex(Path base) {
+        this.base = base.toAbsolutePath().normalize();
+    }
+
+    private static String key(String groupId, String artifactId) {
+        return groupId + ":" + artifactId;
+    }
+
+    /**
+     * Picks the version served for a request: the requested version if it is installed,
+     * otherwise the {@code debian} version, otherwise the highest installed version.
+     *
+     * @return version or null if the artifact is not installed
+     */
+    public String resolveVersion(String groupId, String artifactId, String version) {
+        Entry entry = entries.get(key(groupId, artifactId));
+        if (entry == null) {
+            return null;
+        }
+        if (DEBIAN_VERSION.equals(version) ? entry.debian() : entry.versions().contains(version)) {
+            return version;
+        }
+        if (entry.debian()) {
+            return DEBIAN_VERSION;
+        }
+        return entry.versions().isEmpty() ? null : entry.versions().getLast();
+    }
+
+    /**
+     * @return installed versions in maven order, {@code debian} is not included
+     */
+    public List<String> getVersions(String groupId, String artifactId) {
+        Entry entry = entries.get(key(groupId, artifactId));
+        return entry == null ? List.of() : entry.versions();
+    }
+
+    /**
+     * Scans the repository, the top level directories are walked in parallel.
+     */
+    public void scan() {
+        long start = System.currentTimeMillis();
+        if (!Files.isDirectory(base)) {
+            logger.warn("Debian repository {} does not exist", base);
+            return;
+        }
+        try (Stream<Path> children = Files.list(base)) {
+            children.toList().parallelStream().forEach(this::scanTree);
+        } catch (IOException e) {
+            logger.warn("Unable to scan {}: {}", base, e.getMessage());
+        }
+        logger.info("Indexed {} artifacts from {} in {} ms", entries.size(), base, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Starts a background thread applying filesystem changes to the index.
+     */
+    public synchronized void watch() throws IOException {
+        if (watchService != null || !Files.isDirectory(base)) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        register(watchService, base);
+        WatchService service = watchService;
+        Thread.ofVirtual().name("debian-index-watch").start(() -> processEvents(service));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    private void scanTree(Path root) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    addFile(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    logger.debug("Unable to read {}: {}", file, exc.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Unable to scan {}: {}", root, e.getMessage());
+        }
+    }
+
+    private void addFile(Path file) {
+        Path versionDir = file.getParent();
+        Path artifactDir = versionDir == null ? null : versionDir.getParent();
+        if (artifactDir == null || artifactDir.getParent() == null || !artifactDir.getParent().startsWith(base)
+                || artifactDir.getParent().equals(base)) {
+            return;
+        }
+        if (!isArtifactFile(file.getFileName().toString(), artifactDir, versionDir)) {
+            return;
+        }
+        String groupId = base.relativize(artifactDir.getParent()).toString().replace(file.getFileSystem().getSeparator(), ".");
+        String version = versionDir.getFileName().toString();
+        String key = key(groupId, artifactDir.getFileName().toString());
+        entries.compute(key, (k, entry) ->
+                (entry == null ? new Entry(artifactDir, List.of(), false) : entry).with(version));
+        directories.put(artifactDir.toString(), key);
+    }
+
+    private static boolean isArtifactFile(String fileName, Path artifactDir, Path versionDir) {
+        return fileName.startsWith(artifactDir.getFileName() + "-" + versionDir.getFileName() + ".");
+    }
+
+    /**
+     * Drops the versions affected by the deletion of {@code path} whose directory no longer
+     * holds an artifact file. Only the entries of the artifact the path belonged to, or of the
+     * artifacts below it if it was a directory, are checked.
+     */
+    private void removeMissing(Path path) {
+        HashSet<String> keys = new HashSet<>();
+        // the path was an artifact file, a version directory or an artifact directory
+        Path dir = path;
+        for (int depth = 0; depth < 3 && dir != null && keys.isEmpty(); ++depth, dir = dir.getParent()) {
+            String key = directories.get(dir.toString());
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        // the path was a directory holding artifacts
+        String prefix = path + path.getFileSystem().getSeparator();
+        keys.addAll(directories.subMap(prefix, prefix + Character.MAX_VALUE).values());
+        for (var key : keys) {
+            removeMissingVersions(key);
+        }
+    }
+
+    private void removeMissingVersions(String key) {
+        Entry removed = entries.get(key);
+        entries.computeIfPresent(key, (k, entry) -> {
+            ArrayList<String> versions = new ArrayList<>(entry.versions());
+            if (entry.debian()) {
+                versions.add(DEBIAN_VERSION);
+            }
+            Entry updated = entry;
+            for (var version : versions) {
+                if (!hasArtifactFile(entry.directory(), entry.directory().resolve(version))) {
+                    updated = updated.without(version);
+                }
+            }
+            return updated.isEmpty() ? null : updated;
+        });
+        if (removed != null && !entries.containsKey(key)) {
+            directories.remove(removed.directory().toString(), key);
+        }
+    }
+
+    private static boolean hasArtifactFile(Path artifactDir, Path versionDir) {
+        try (Stream<Path> files = Files.list(versionDir)) {
+            return files.anyMatch(f -> isArtifactFile(f.getFileName().toString(), artifactDir, versionDir));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Watches every directory below {@code root}. A directory that cannot be watched, e.g. because
+     * fs.inotify.max_user_watches is exhausted, is skipped, changes below it are not noticed
+     * until the next rescan.
+     */
+    private void register(WatchService service, Path root) {
+        int[] failed = new int[1];
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    try {
+                        dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    } catch (IOException e) {
+                        if (failed[0]++ == 0) {
+                            logger.warn("Unable to watch {}: {}", dir, e.getMessage());
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Unable to watch {}: {}", root, e.getMessage());
+        }
+        if (failed[0] > 0) {
+            logger.warn("{} directories below {} are not watched, raise fs.inotify.max_user_watches to watch them",
+                    failed[0], root);
+        }
+    }
+
+    private void processEvents(WatchService service) {
+        try {
+            while (true) {
+                WatchKey watchKey = service.take();
+                Path dir = (Path) watchKey.watchable();
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        logger.info("Debian repository changes were lost, rescanning {}", base);
+                        register(service, base);
+                        scan();
+                        removeMissing(base);
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        removeMissing(path);
+                    } else if (Files.isDirectory(path)) {
+                        register(service, path);
+                        scanTree(path);
+                    } else {
+                        addFile(path);
+                    }
+                }
+                watchKey.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+}
@@ -1,152 +1,178 @@
 package org.debian.mavenproxy.repositories;
 
 import org.debian.maven.repo.Dependency;
-import org.debian.maven.repo.DependencyRuleSet;
 import org.debian.mavenproxy.Artifact;
-import org.debian.mavenproxy.RuleParser;
+import org.debian.mavenproxy.DbManager;
+import org.debian.mavenproxy.RuleMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 
 public class DebianRepository extends AbstractRepository {
     private static final Logger logger = LoggerFactory.getLogger(LocalRepository.class);
 
-    private final DependencyRuleSet ignoreRuleSet;
-    private final DependencyRuleSet replaceRuleSet;
-
-    public DebianRepository(String localRepositoryBasePath, List<String> replaceRules, List<String> ignoreRules) {
+    private final RuleMatcher ignoreRules;
+    private final RuleMatcher replaceRules;
+    private final PomRewriter pomRewriter = new PomRewriter();
+    private final DebianIndex index;
+    private final DbManager dbManager;
+
+    /**
+     * @param dbManager catalog of the artifacts imported from Debian, consulted for the artifacts
+     *                  the index does not know, may be null
+     */
+    public DebianRepository(String localRepositoryBasePath, List<String> ignoreRules, List<String> replaceRules, DbManager dbManager) {
         super(localRepositoryBasePath);
-        this.ignoreRuleSet = RuleParser.parseRules(ignoreRules, "ignore");
-        this.replaceRuleSet = RuleParser.parseRules(replaceRules, "replace");
+        this.dbManager = dbManager;
+        this.index = new DebianIndex(Path.of(localRepositoryBasePath));
+        index.scan();
+        try {
+            index.watch();
+        } catch (IOException e) {
+            logger.warn("Unable to watch {} for changes: {}", localRepositoryBasePath, e.getMessage());
+        }
+        this.ignoreRules = new RuleMatcher(ignoreRules);
+        this.replaceRules = new RuleMatcher(replaceRules);
     }
 
     @Override
     public RepositoryContent getArtifact(String groupId, String artifactId, String version, String fileName) throws FileNotFoundException {
-        if (groupId.length() > 0) {
-            throw new FileNotFoundException("foobar");
-        }
-        if (fileName.endsWith(".sha1")) {
-            throw new RuntimeException("Unable to request sha1 from Debian Repository");
+        String ext = checkRequest(artifactId, version, fileName);
+
+        if (isIgnored(groupId, artifactId, version, ext)) {
+            return new RepositoryContent(new Artifact("org.debian", "placeholder", "1.0", ext), new ByteArrayInputStream(getPlaceholder(groupId, artifactId, version, ext)));
         }
-        // skip maven repository for maven plugins
-        String ext = fileName.substring(fileName.lastIndexOf(".")+1);
 
-        if (!ignoreRuleSet.findMatchingRules(new Dependency(groupId, artifactId, ext, version)).isEmpty()) {
-            if (ext.equals("pom")) {
-                return new RepositoryContent(new Artifact("org.debian", "placeholder", "1.0", "pom"), new ByteArrayInputStream(getPom(groupId, artifactId, version)));
-            } else if (ext.equals("jar")) {
-                return new RepositoryContent(new Artifact("org.debian", "placeholder", "1.0", "jar"), new ByteArrayInputStream(getJarBytes()));
-            }
-            throw new RuntimeException("Unknown file type "+ ext);
+        Path requestedPath = resolvePath(groupId, artifactId, version, ext);
+        String foundVersion = requestedPath.getParent().getFileName().toString();
+        logger.info("Reading file from debian repository "+ requestedPath + " for artifact "+ groupId + ":"+ artifactId + ":"+ version);
+        if ("pom".equals(ext)) {
+            return new RepositoryContent(new Artifact(groupId, artifactId, foundVersion, ext), new ByteArrayInputStream(readPom(requestedPath, groupId, artifactId, version)));
+        } else  if ("jar".equals(ext)) {
+            return new RepositoryContent(new Artifact(groupId, artifactId, foundVersion, ext), new FileInputStream(requestedPath.toFile()));
         }
+        throw new RuntimeException("Unsupported extension "+ ext + " file "+ requestedPath);
+    }
 
-        Path testPath = Path.of(getBase(), groupId.replace(".", "/"), artifactId);
-        File[] children = testPath.toFile().listFiles();
-        if (children == null) {
-            throw new FileNotFoundException(testPath.toString());
+    /**
+     * Jars are answered with a stat of the Debian file, POMs with the size of the rewritten POM
+     * that is served for the requested coordinates.
+     */
+    @Override
+    public ArtifactMetadata getArtifactMetadata(String groupId, String artifactId, String version, String fileName) throws FileNotFoundException {
+        String ext = checkRequest(artifactId, version, fileName);
+
+        if (isIgnored(groupId, artifactId, version, ext)) {
+            return new ArtifactMetadata(getPlaceholder(groupId, artifactId, version, ext).length, -1);
         }
 
-        String foundVersion = getDebianVersion(version, children);
-        String newFileName = artifactId + "-"+ foundVersion + "." + ext;
-        Path requestedPath = Path.of(getBase(), groupId.replace(".", "/"), artifactId, foundVersion, newFileName);
-        logger.info("Reading file from debian repository "+ requestedPath + " for artifact "+ groupId + ":"+ artifactId + ":"+ version);
+        Path requestedPath = resolvePath(groupId, artifactId, version, ext);
+        ArtifactMetadata metadata = readMetadata(requestedPath);
         if ("pom".equals(ext)) {
-            try {
-                return new RepositoryContent(new Artifact(groupId, artifactId, foundVersion, ext), new ByteArrayInputStream(mapPom(requestedPath.toFile(), groupId, artifactId, version)));
-            }
-            catch (IOException | ParserConfigurationException | SAXException| TransformerException e) {
-                throw new FileNotFoundException(e.getMessage());
-            }
+            return new ArtifactMetadata(readPom(requestedPath, groupId, artifactId, version).length, metadata.lastModified());
         } else  if ("jar".equals(ext)) {
-            return new RepositoryContent(new Artifact(groupId, artifactId, foundVersion, ext), new FileInputStream(requestedPath.toFile()));
+            return metadata;
         }
         throw new RuntimeException("Unsupported extension "+ ext + " file "+ requestedPath);
     }
 
-    private static String getDebianVersion(String version, File[] children) throws FileNotFoundException {
-        HashSet<String> foundVersions = new HashSet<>();
-        for (File f : children){
-            foundVersions.add(f.getName());
+    /**
+     * An artifact only installed as {@code debian} is listed with the version it was imported
+     * from, which resolves to the {@code debian} version when requested.
+     *
+     * @return versions that can be served for the artifact in maven order
+     */
+    public List<String> getVersions(String groupId, String artifactId) {
+        List<String> versions = index.getVersions(groupId, artifactId);
+        if (versions.isEmpty() && dbManager != null
+                && DebianIndex.DEBIAN_VERSION.equals(index.resolveVersion(groupId, artifactId, DebianIndex.DEBIAN_VERSION))) {
+            String original = dbManager.readOriginalVersion(groupId, artifactId);
+            if (original != null) {
+                return List.of(original);
+            }
         }
-        if (foundVersions.isEmpty()) {
-            throw new FileNotFoundException(version);
+        return versions;
+    }
+
+    /**
+     * The Debian repository only serves the POM and the jar of an artifact, files with a
+     * classifier, other packagings and checksums are left to the other tiers.
+     *
+     * @return extension of the requested file
+     */
+    private static String checkRequest(String artifactId, String version, String fileName) throws FileNotFoundException {
+        if (ChecksumAlgorithm.isChecksum(fileName)) {
+            // checksums are computed from the artifact stored in the local repository
+            throw new FileNotFoundException(fileName);
         }
-        String foundVersion = "debian";
-        if (foundVersions.contains(version)) {
-            foundVersion = version;
-        } else if (foundVersions.contains("debian")) {
-            foundVersion = "debian";
-        } else {
-            foundVersion = foundVersions.iterator().next();
+        String ext = fileName.substring(fileName.lastIndexOf(".")+1);
+        if (!("pom".equals(ext) || "jar".equals(ext)) || !fileName.equals(artifactId + "-" + version + "." + ext)) {
+            throw new FileNotFoundException(fileName);
         }
-        return foundVersion;
+        return ext;
     }
 
-    public static byte[] mapPom(
-            File inputFile,
-            String newGroupId,
-            String newArtifactId,
-            String newVersion) throws IOException, ParserConfigurationException, SAXException, TransformerException {
+    private boolean isIgnored(String groupId, String artifactId, String version, String ext) {
+        return ignoreRules.matches(new Dependency(groupId, artifactId, ext, version));
+    }
 
-        if (!inputFile.exists()) {
-            throw new IOException("Input POM file not found: " + inputFile);
+    private static byte[] getPlaceholder(String groupId, String artifactId, String version, String ext) {
+        if (ext.equals("pom")) {
+            return getPom(groupId, artifactId, version);
+        } else if (ext.equals("jar")) {
+            return getJarBytes();
         }
+        throw new RuntimeException("Unknown file type "+ ext);
+    }
 
-        DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-        Document doc = docBuilder.parse(inputFile);
-
-        doc.getDocumentElement().normalize();
-        Node project = doc.getElementsByTagName("project").item(0);
-        NodeList nodes = project.getChildNodes();
-        for (int i = 0; i < nodes.getLength() ; ++i) {
-            Node n = nodes.item(i);
-            if (n.getNodeName().equals("groupId")) {
-                n.setTextContent(newGroupId);
-            }
-            if (n.getNodeName().equals("artifactId")) {
-                n.setTextContent(newArtifactId);
-            }
-            if (n.getNodeName().equals("version")) {
-                n.setTextContent(newVersion);
-            }
+    /**
+     * Maps the requested coordinates with the replace rules and picks the installed version.
+     */
+    private Path resolvePath(String groupId, String artifactId, String version, String ext) throws FileNotFoundException {
+        Dependency installed = replaceRules.apply(new Dependency(groupId, artifactId, ext, version));
+        String foundVersion = index.resolveVersion(installed.getGroupId(), installed.getArtifactId(), installed.getVersion());
+        if (foundVersion == null) {
+            foundVersion = resolveCatalogVersion(installed.getGroupId(), installed.getArtifactId(), installed.getVersion());
+        }
+        if (foundVersion == null) {
+            throw new FileNotFoundException(groupId + ":" + artifactId + ":" + version);
         }
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        String newFileName = installed.getArtifactId() + "-"+ foundVersion + "." + ext;
+        return Path.of(getBase(), installed.getGroupId().replace(".", "/"), installed.getArtifactId(), foundVersion, newFileName);
+    }
 
-        DOMSource source = new DOMSource(doc);
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        StreamResult result = new StreamResult(bos);
+    /**
+     * Picks the version from the catalog for an artifact missing from the index, e.g. one whose
+     * version directory is a symbolic link the scan does not follow. A version that is not
+     * installed after all is reported missing when the file is read.
+     *
+     * @return requested version if the catalog lists it, otherwise {@code debian} if listed, otherwise null
+     */
+    private String resolveCatalogVersion(String groupId, String artifactId, String version) {
+        if (dbManager == null) {
+            return null;
+        }
+        List<String> versions = dbManager.findVersion(groupId, artifactId);
+        if (versions.contains(version)) {
+            return version;
+        }
+        return versions.contains(DebianIndex.DEBIAN_VERSION) ? DebianIndex.DEBIAN_VERSION : null;
+    }
 
-        transformer.transform(source, result);
-        return bos.toByteArray();
+    private byte[] readPom(Path requestedPath, String groupId, String artifactId, String version) throws FileNotFoundException {
+        try {
+            return pomRewriter.rewrite(requestedPath, groupId, artifactId, version);
+        }
+        catch (IOException e) {
+            throw new FileNotFoundException(e.getMessage());
+        }
     }
 
     private static byte[] getJarBytes() {
@@ -4,53 +4,292 @@ import org.debian.mavenproxy.Artifact;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.DigestInputStream;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 public class LocalRepository extends AbstractRepository {
     private static final Logger logger = LoggerFactory.getLogger(LocalRepository.class);
 
+    private static final Pattern HEX_DIGITS = Pattern.compile("[0-9a-fA-F]+");
+    // text files stored with a gzip variant, archives are already compressed
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of("pom", "xml", "module");
+    public static final String COMPRESSED_SUFFIX = ".gz";
+
+    private final List<ChecksumAlgorithm> checksums;
+    private final List<StoreListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Notified after an artifact was committed to the repository.
+     */
+    public interface StoreListener {
+        void artifactStored(String groupId, String artifactId, String version, String fileName);
+    }
+
     public LocalRepository(String localRepositoryBasePath) {
+        this(localRepositoryBasePath, List.of(ChecksumAlgorithm.SHA1));
+    }
+
+    /**
+     * @param checksums checksum sidecars written next to every stored artifact
+     */
+    public LocalRepository(String localRepositoryBasePath, List<ChecksumAlgorithm> checksums) {
         super(localRepositoryBasePath);
+        this.checksums = List.copyOf(checksums);
+    }
+
+    public void addStoreListener(StoreListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return true if a gzip variant named {@code fileName + ".gz"} is stored next to the file
+     */
+    public static boolean isCompressible(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 && COMPRESSIBLE_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
     }
 
     public void putArtifact(String groupId, String artifactId, String version, String fileName, InputStream is) {
-        if (fileName.endsWith(".sha1")) {
+        if (ChecksumAlgorithm.isChecksum(fileName)) {
             return;
         }
-        Path directory = Path.of(this.getBase(), groupId.replace(".", "/"), artifactId, version);
-        directory.toFile().mkdirs();
-        Path output = directory.resolve(fileName);
-        try (is) {
-            byte[] data = is.readAllBytes();
-            Files.write(output, data);
-            Path sha1 = Path.of(output + ".sha1");
-            Files.writeString(sha1, calculateChecksum(data, "SHA1"));
-        }
-        catch (IOException | NoSuchAlgorithmException e) {
+        try (is; CacheWriter writer = openArtifact(groupId, artifactId, version, fileName)) {
+            is.transferTo(writer.getOutputStream());
+            writer.commit();
+        }
+        catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Opens a writer storing the artifact in the repository. The data is written to a temporary
+     * file that is moved into place on {@link CacheWriter#commit()}, so that requests served
+     * concurrently never observe a partially written artifact.
+     */
+    public CacheWriter openArtifact(String groupId, String artifactId, String version, String fileName) throws IOException {
+        Path directory = Path.of(this.getBase(), groupId.replace(".", "/"), artifactId, version);
+        Files.createDirectories(directory);
+        Path target = directory.resolve(fileName);
+        return new CacheWriter(target, ChecksumAlgorithm.isChecksum(fileName) ? List.of() : checksums, () -> {
+            for (var listener : listeners) {
+                listener.artifactStored(groupId, artifactId, version, fileName);
+            }
+        });
+    }
+
+    /**
+     * @return versions of the artifact present in the repository, in no particular order
+     */
+    public List<String> getVersions(String groupId, String artifactId) {
+        Path directory = Path.of(this.getBase(), groupId.replace(".", "/"), artifactId);
+        ArrayList<String> versions = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (var child : children) {
+                String version = child.getFileName().toString();
+                if (Files.isRegularFile(child.resolve(artifactId + "-" + version + ".pom"))
+                        || Files.isRegularFile(child.resolve(artifactId + "-" + version + ".jar"))) {
+                    versions.add(version);
+                }
+            }
+        } catch (IOException e) {
+            // no versions
+        }
+        return versions;
+    }
+
+    public static class CacheWriter implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final List<ChecksumAlgorithm> algorithms;
+        private final Runnable onCommit;
+        private final Path compressed;
+        private final MessageDigest[] digests;
+        private final OutputStream out;
+        private boolean closed;
+        private boolean committed;
+
+        private CacheWriter(Path target, List<ChecksumAlgorithm> algorithms, Runnable onCommit) throws IOException {
+            this.target = target;
+            this.algorithms = algorithms;
+            this.onCommit = onCommit;
+            this.compressed = isCompressible(target.getFileName().toString()) ? Path.of(target + COMPRESSED_SUFFIX) : null;
+            this.digests = new MessageDigest[algorithms.size()];
+            this.temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+            // every digest is updated by the single pass writing the file
+            OutputStream stream = Files.newOutputStream(temp);
+            for (int i = 0; i < digests.length; ++i) {
+                digests[i] = algorithms.get(i).newDigest();
+                stream = new DigestOutputStream(stream, digests[i]);
+            }
+            this.out = stream;
+        }
+
+        /**
+         * @return unbuffered stream to the temporary file, written bytes are immediately visible to readers of {@link #getTempPath()}
+         */
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        public Path getTempPath() {
+            return temp;
+        }
+
+        public Path getTargetPath() {
+            return target;
+        }
+
+        /**
+         * Moves the artifact into the repository, then writes the checksum files and the gzip
+         * variant next to it. A failed checksum file or variant is removed, readers fall back to
+         * computing the digest or serving the artifact uncompressed, and never find them without
+         * the artifact they were derived from.
+         */
+        public void commit() throws IOException {
+            closeStream();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            for (int i = 0; i < digests.length; ++i) {
+                Path sidecar = Path.of(target + "." + algorithms.get(i).getExtension());
+                try {
+                    writeAtomically(sidecar, HexFormat.of().formatHex(digests[i].digest()).getBytes(StandardCharsets.US_ASCII));
+                } catch (IOException e) {
+                    logger.warn("unable to write {}: {}", sidecar, e.getMessage());
+                    deleteStale(sidecar);
+                }
+            }
+            if (compressed != null) {
+                writeCompressed();
+            }
+            onCommit.run();
+        }
+
+        /**
+         * Compresses the file once when it enters the cache, requests accepting gzip are served
+         * the variant without compressing per request. The artifact is committed without a
+         * variant if compression fails.
+         */
+        private void writeCompressed() {
+            try {
+                Path gzTemp = Files.createTempFile(compressed.getParent(), compressed.getFileName().toString(), ".part");
+                try {
+                    try (OutputStream gz = new GZIPOutputStream(Files.newOutputStream(gzTemp))) {
+                        Files.copy(target, gz);
+                    }
+                    Files.move(gzTemp, compressed, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(gzTemp);
+                }
+            } catch (IOException e) {
+                logger.warn("unable to compress {}: {}", target, e.getMessage());
+                deleteStale(compressed);
+            }
+        }
+
+        /**
+         * Removes a file left over from a previous copy of the artifact.
+         */
+        private static void deleteStale(Path file) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("unable to remove stale {}: {}", file, e.getMessage());
+            }
+        }
+
+        public void abort() {
+            try {
+                closeStream();
+            } catch (IOException e) {
+                logger.debug("error closing {}", temp, e);
+            }
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                logger.warn("unable to remove {}: {}", temp, e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!committed) {
+                abort();
+            }
+        }
+
+        private void closeStream() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.close();
+            }
+        }
+    }
+
+    private static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public boolean hasArtifact(String groupId, String artifactId, String version, String fileName) {
+        return Files.isRegularFile(Path.of(this.getBase(), groupId.replace(".", "/"), artifactId, version, fileName));
+    }
+
     public RepositoryContent getArtifact(String groupId, String artifactId, String version, String fileName) throws FileNotFoundException {
         String ext = fileName.substring(fileName.lastIndexOf(".")+1);
         Path input = Path.of(this.getBase(), groupId.replace(".", "/"), artifactId, version, fileName);
-        return new RepositoryContent(new Artifact(groupId, artifactId, version, ext), new FileInputStream(input.toFile()));
+        if (!Files.isRegularFile(input)) {
+            throw new FileNotFoundException(input.toString());
+        }
+        return new RepositoryContent(new Artifact(groupId, artifactId, version, ext), input);
+    }
+
+    /**
+     * Reads the checksum sidecar written when the artifact was stored.
+     */
+    @Override
+    public String getChecksum(String groupId, String artifactId, String version, String fileName, ChecksumAlgorithm algorithm) throws FileNotFoundException {
+        Path sidecar = Path.of(this.getBase(), groupId.replace(".", "/"), artifactId, version, fileName + "." + algorithm.getExtension());
+        try {
+            // checksum files published by some repositories are followed by the file name
+            String digest = Files.readString(sidecar, StandardCharsets.US_ASCII).trim().split("\\s+", 2)[0];
+            if (digest.isEmpty() || !HEX_DIGITS.matcher(digest).matches()) {
+                throw new FileNotFoundException("invalid checksum in " + sidecar);
+            }
+            return digest.toLowerCase(Locale.ROOT);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new FileNotFoundException(sidecar + ": " + e.getMessage());
+        }
     }
 
-    private String calculateChecksum(byte[] data, String algorithm) throws NoSuchAlgorithmException {
-        MessageDigest messageDigest = MessageDigest.getInstance(algorithm);
-        messageDigest.update(data);
-        HexFormat hex = HexFormat.of();
-        return hex.formatHex(messageDigest.digest()).toLowerCase();
+    @Override
+    public ArtifactMetadata getArtifactMetadata(String groupId, String artifactId, String version, String fileName) throws FileNotFoundException {
+        Path input = Path.of(this.getBase(), groupId.replace(".", "/"), artifactId, version, fileName);
+        return readMetadata(input);
     }
 }
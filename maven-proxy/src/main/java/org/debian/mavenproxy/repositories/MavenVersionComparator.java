@@ -0,0 +1,95 @@
+package org.debian.mavenproxy.repositories;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Orders version strings the way maven does. Versions are split into numeric and qualifier
+ * items at separators and digit/letter transitions, numbers compare numerically and are newer
+ * than qualifiers, well known qualifiers are ordered
+ * alpha &lt; beta &lt; milestone &lt; rc &lt; snapshot &lt; release &lt; sp.
+ */
+public final class MavenVersionComparator implements Comparator<String> {
+    public static final MavenVersionComparator INSTANCE = new MavenVersionComparator();
+
+    private static final List<String> QUALIFIERS = List.of("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+    private static final Map<String, String> ALIASES = Map.of(
+            "a", "alpha",
+            "b", "beta",
+            "m", "milestone",
+            "cr", "rc",
+            "ga", "",
+            "final", "",
+            "release", "");
+
+    private MavenVersionComparator() {
+    }
+
+    @Override
+    public int compare(String left, String right) {
+        List<Object> l = parse(left);
+        List<Object> r = parse(right);
+        for (int i = 0; i < Math.max(l.size(), r.size()); ++i) {
+            int result = compareItem(i < l.size() ? l.get(i) : null, i < r.size() ? r.get(i) : null);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private static List<Object> parse(String version) {
+        ArrayList<Object> items = new ArrayList<>();
+        String v = version.toLowerCase(Locale.ROOT);
+        int start = 0;
+        for (int i = 0; i <= v.length(); ++i) {
+            boolean end = i == v.length();
+            char c = end ? '.' : v.charAt(i);
+            boolean separator = c == '.' || c == '-' || c == '_';
+            boolean transition = !separator && i > start && Character.isDigit(c) != Character.isDigit(v.charAt(i - 1));
+            if (separator || transition) {
+                if (i > start) {
+                    String token = v.substring(start, i);
+                    items.add(Character.isDigit(token.charAt(0)) ? new BigInteger(token) : ALIASES.getOrDefault(token, token));
+                }
+                start = separator ? i + 1 : i;
+            }
+        }
+        return items;
+    }
+
+    private static int compareItem(Object left, Object right) {
+        if (left == null) {
+            return right == null ? 0 : -compareItem(right, null);
+        }
+        if (left instanceof BigInteger number) {
+            if (right == null) {
+                return number.signum();
+            }
+            return right instanceof BigInteger other ? number.compareTo(other) : 1;
+        }
+        String qualifier = (String) left;
+        if (right == null) {
+            return compareQualifier(qualifier, "");
+        }
+        return right instanceof String other ? compareQualifier(qualifier, other) : -1;
+    }
+
+    private static int compareQualifier(String left, String right) {
+        int l = rank(left);
+        int r = rank(right);
+        if (l != r) {
+            return Integer.compare(l, r);
+        }
+        return l == QUALIFIERS.size() ? left.compareTo(right) : 0;
+    }
+
+    private static int rank(String qualifier) {
+        int index = QUALIFIERS.indexOf(qualifier);
+        return index >= 0 ? index : QUALIFIERS.size();
+    }
+}
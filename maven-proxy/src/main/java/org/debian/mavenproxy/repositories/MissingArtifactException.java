@@ -0,0 +1,15 @@
+package org.debian.mavenproxy.repositories;
+
+import java.io.FileNotFoundException;
+
+/**
+ * Thrown when a repository positively answered that it does not have the artifact,
+ * as opposed to failing to answer at all.
+ */
+public class MissingArtifactException extends FileNotFoundException {
+    private static final long serialVersionUID = 1L;
+
+    public MissingArtifactException(String message) {
+        super(message);
+    }
+}
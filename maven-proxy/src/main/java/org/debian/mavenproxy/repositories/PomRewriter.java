@@ -0,0 +1,142 @@
+package org.debian.mavenproxy.repositories;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites the coordinates of a POM. The document is streamed event by event, only the
+ * groupId, artifactId and version elements of the project are replaced, everything else
+ * is copied unchanged. Rewritten POMs are memoized by source file, modification time and
+ * requested coordinates.
+ */
+public class PomRewriter {
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final Set<String> COORDINATES = Set.of("groupId", "artifactId", "version");
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newFactory();
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
+    private static final XMLEventFactory eventFactory = XMLEventFactory.newFactory();
+
+    static {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private record Key(Path file, long lastModified, String groupId, String artifactId, String version) {
+    }
+
+    private final Map<Key, byte[]> cache;
+
+    public PomRewriter() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize maximum number of rewritten POMs kept in memory
+     */
+    public PomRewriter(int cacheSize) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return POM file with the project coordinates replaced, the returned array must not be modified
+     */
+    public byte[] rewrite(Path file, String groupId, String artifactId, String version) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException("Input POM file not found: " + file);
+        }
+        Key key = new Key(file, Files.getLastModifiedTime(file).toMillis(), groupId, artifactId, version);
+        synchronized (cache) {
+            byte[] data = cache.get(key);
+            if (data != null) {
+                return data;
+            }
+        }
+        byte[] data;
+        try (InputStream is = Files.newInputStream(file)) {
+            data = rewrite(is, groupId, artifactId, version);
+        }
+        synchronized (cache) {
+            cache.put(key, data);
+        }
+        return data;
+    }
+
+    public static byte[] rewrite(InputStream is, String groupId, String artifactId, String version) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            XMLEventReader reader = inputFactory.createXMLEventReader(is);
+            XMLEventWriter writer = null;
+            int depth = 0;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (writer == null) {
+                    String encoding = event.isStartDocument() && ((StartDocument) event).encodingSet()
+                            ? ((StartDocument) event).getCharacterEncodingScheme() : "UTF-8";
+                    writer = outputFactory.createXMLEventWriter(out, encoding);
+                }
+                if (event.isStartElement()) {
+                    ++depth;
+                    String name = event.asStartElement().getName().getLocalPart();
+                    if (depth == 2 && COORDINATES.contains(name)) {
+                        writer.add(event);
+                        writer.add(eventFactory.createCharacters(switch (name) {
+                            case "groupId" -> groupId;
+                            case "artifactId" -> artifactId;
+                            default -> version;
+                        }));
+                        skipElement(reader);
+                        writer.add(eventFactory.createEndElement(event.asStartElement().getName(), null));
+                        --depth;
+                        continue;
+                    }
+                } else if (event.isEndElement()) {
+                    --depth;
+                }
+                writer.add(event);
+            }
+            if (writer != null) {
+                writer.close();
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Consumes the content and the end tag of the element whose start tag was just read.
+     */
+    private static void skipElement(XMLEventReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                ++depth;
+            } else if (event.isEndElement()) {
+                --depth;
+            }
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package org.debian.mavenproxy.repositories;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
 import org.debian.mavenproxy.Artifact;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Date;
 
 public class RemoteRepository extends AbstractRepository {
 
@@ -21,45 +25,103 @@ public class RemoteRepository extends AbstractRepository {
     private final CloseableHttpClient httpClient;
 
     public RemoteRepository(String base) {
-        super(base);
-        this.httpClient = HttpClients.createDefault(); // Create a default HTTP client for forwarding requests
+        this(base, HttpClients.createDefault()); // Create a default HTTP client for forwarding requests
+    }
 
+    /**
+     * @param httpClient client shared by the remote repositories, see {@link UpstreamHttpClient}
+     */
+    public RemoteRepository(String base, CloseableHttpClient httpClient) {
+        super(base);
+        this.httpClient = httpClient;
     }
 
     @Override
-    public int getArtifactSize(String groupId, String artifactId, String version, String fileName) throws FileNotFoundException {
-        if (fileName.endsWith(".sha1")) {
-            throw new RuntimeException("SHA1 should be requested from local repository");
+    public ArtifactMetadata getArtifactMetadata(String groupId, String artifactId, String version, String fileName) throws FileNotFoundException {
+        try {
+            return probe(groupId, artifactId, version, fileName).execute();
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new FileNotFoundException(e.getMessage());
+        }
+    }
+
+    /**
+     * Prepares a HEAD request for the artifact. The probe can be cancelled from another thread
+     * while it executes.
+     */
+    public Probe probe(String groupId, String artifactId, String version, String fileName) {
+        return new Probe(new HttpHead(getArtifactUrl(groupId, artifactId, version, fileName)));
+    }
+
+    public String getRepositoryUrl() {
+        return getBase();
+    }
+
+    public String getArtifactUrl(String groupId, String artifactId, String version, String fileName) {
+        return getBase() + "/" + groupId.replace(".", "/") + "/" + artifactId + "/" + version + "/" + fileName;
+    }
+
+    /**
+     * @return announced length, -1 if the header is missing or malformed
+     */
+    private static long parseLength(Header contentLength) {
+        if (contentLength == null) {
+            return -1;
         }
-        String path = getBase() + "/" + groupId.replace(".", "/") + "/" + artifactId + "/" + version + "/" + fileName;
-        HttpHead head = new HttpHead(path);
-        CloseableHttpResponse remoteResponse = null;
         try {
-            remoteResponse = httpClient.execute(head);
-            int statusCode = remoteResponse.getStatusLine().getStatusCode();
-            if (HttpStatus.SC_OK != statusCode) {
-                throw new FileNotFoundException("not found at " + path);
+            long length = Long.parseLong(contentLength.getValue().trim());
+            return length >= 0 ? length : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void checkStatus(int statusCode, String path) throws FileNotFoundException {
+        if (HttpStatus.SC_NOT_FOUND == statusCode || HttpStatus.SC_GONE == statusCode) {
+            throw new MissingArtifactException("not found at " + path);
+        }
+        if (HttpStatus.SC_OK != statusCode) {
+            throw new FileNotFoundException("not found at " + path);
+        }
+    }
+
+    public class Probe {
+        private final HttpHead head;
+
+        private Probe(HttpHead head) {
+            this.head = head;
+        }
+
+        /**
+         * @throws MissingArtifactException if the remote answered that it does not have the artifact
+         * @throws IOException if the remote could not be asked, e.g. it rejects or drops HEAD requests
+         */
+        public ArtifactMetadata execute() throws IOException {
+            try (CloseableHttpResponse remoteResponse = httpClient.execute(head)) {
+                checkStatus(remoteResponse.getStatusLine().getStatusCode(), head.getURI().toString());
+                Header contentLength = remoteResponse.getFirstHeader("Content-Length");
+                Header lastModified = remoteResponse.getFirstHeader("Last-Modified");
+                Date modified = lastModified != null ? DateUtils.parseDate(lastModified.getValue()) : null;
+                return new ArtifactMetadata(parseLength(contentLength), modified != null ? modified.getTime() : -1);
             }
-            return Integer.parseInt(remoteResponse.getFirstHeader("Content-Length").getValue());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        }
+
+        public void cancel() {
+            head.abort();
         }
     }
 
     @Override
     public RepositoryContent getArtifact(String groupId, String artifactId, String version, String fileName) throws FileNotFoundException {
-        if (fileName.endsWith(".sha1")) {
-            throw new RuntimeException("SHA1 should be requested from local repository");
-        }
-        String path = getBase() + "/" + groupId.replace(".", "/") + "/" + artifactId + "/" + version + "/" + fileName;
+        String path = getArtifactUrl(groupId, artifactId, version, fileName);
         HttpGet httpGet = new HttpGet(path);
         HttpEntity remoteEntity = null;
+        CloseableHttpResponse remoteResponse = null;
         try {
-            var remoteResponse = httpClient.execute(httpGet);
-            int statusCode = remoteResponse.getStatusLine().getStatusCode();
-            if (HttpStatus.SC_OK != statusCode) {
-                throw new FileNotFoundException("not found at " + path);
-            }
+            remoteResponse = httpClient.execute(httpGet);
+            checkStatus(remoteResponse.getStatusLine().getStatusCode(), path);
 
             remoteEntity = remoteResponse.getEntity();
             if (remoteEntity == null) {
@@ -67,9 +129,54 @@ public class RemoteRepository extends AbstractRepository {
             }
             String ext = fileName.substring(fileName.lastIndexOf(".")+1);
 
-            return new RepositoryContent(new Artifact(groupId, artifactId, version, ext),  remoteEntity.getContent());
+            // closing the content stream releases the connection
+            return new RepositoryContent(new Artifact(groupId, artifactId, version, ext),  remoteEntity.getContent(), remoteEntity.getContentLength());
+        } catch (FileNotFoundException e) {
+            release(remoteResponse);
+            throw e;
+        } catch (IOException e) {
+            release(remoteResponse);
+            throw new FileNotFoundException(e.getMessage());
+        }
+    }
+
+    /**
+     * Downloads a small file that is not an artifact, e.g. maven-metadata.xml.
+     *
+     * @param relativePath path below the repository url
+     */
+    public byte[] getRepositoryFile(String relativePath) throws FileNotFoundException {
+        String path = getBase() + "/" + relativePath;
+        try (CloseableHttpResponse remoteResponse = httpClient.execute(new HttpGet(path))) {
+            try {
+                checkStatus(remoteResponse.getStatusLine().getStatusCode(), path);
+            } catch (FileNotFoundException e) {
+                EntityUtils.consumeQuietly(remoteResponse.getEntity());
+                throw e;
+            }
+            if (remoteResponse.getEntity() == null) {
+                throw new FileNotFoundException("not found at " + path);
+            }
+            return EntityUtils.toByteArray(remoteResponse.getEntity());
+        } catch (FileNotFoundException e) {
+            throw e;
         } catch (IOException e) {
             throw new FileNotFoundException(e.getMessage());
         }
     }
+
+    /**
+     * Consumes the error body so that the connection can be reused and closes the response.
+     */
+    private static void release(CloseableHttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        EntityUtils.consumeQuietly(response.getEntity());
+        try {
+            response.close();
+        } catch (IOException e) {
+            logger.debug("error closing response", e);
+        }
+    }
 }
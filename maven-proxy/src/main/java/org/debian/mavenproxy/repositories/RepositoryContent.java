@@ -2,21 +2,60 @@ package org.debian.mavenproxy.repositories;
 
 import org.debian.mavenproxy.Artifact;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class RepositoryContent {
     private final Artifact foundArtifact;
     private final InputStream is;
+    private final Path path;
+    private final long size;
 
     public RepositoryContent(Artifact foundArtifact, InputStream is) {
+        this(foundArtifact, is, -1);
+    }
+
+    public RepositoryContent(Artifact foundArtifact, InputStream is, long size) {
         this.foundArtifact = foundArtifact;
         this.is = is;
+        this.path = null;
+        this.size = size;
+    }
+
+    /**
+     * Content backed by a file. The file is only opened when the content is read,
+     * so that it can be served without copying it onto the heap.
+     */
+    public RepositoryContent(Artifact foundArtifact, Path path) {
+        this.foundArtifact = foundArtifact;
+        this.is = null;
+        this.path = path;
+        this.size = -1;
     }
 
-    public InputStream getInputStream() {
+    public InputStream getInputStream() throws IOException {
+        if (path != null) {
+            return Files.newInputStream(path);
+        }
         return this.is;
     }
 
+    /**
+     * @return file backing this content or null if the content is only available as a stream
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return size of a streamed content if known in advance, -1 otherwise
+     */
+    public long getSize() {
+        return size;
+    }
+
     public Artifact getFoundArtifact() {
         return foundArtifact;
     }
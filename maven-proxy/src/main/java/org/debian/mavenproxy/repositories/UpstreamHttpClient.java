@@ -0,0 +1,39 @@
+package org.debian.mavenproxy.repositories;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.debian.mavenproxy.ConfigUtil;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the HTTP client shared by all remote repositories.
+ * Connections to the upstreams are pooled with a total and a per host limit,
+ * idle connections are evicted in the background.
+ */
+public class UpstreamHttpClient {
+    public static CloseableHttpClient create(Map<String, Object> config) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(ConfigUtil.getInt(config, "max-connections", 64));
+        connectionManager.setDefaultMaxPerRoute(ConfigUtil.getInt(config, "max-connections-per-host", 8));
+        // revalidate pooled connections the upstream may have closed while idle
+        connectionManager.setValidateAfterInactivity(2000);
+
+        int connectionRequestTimeout = ConfigUtil.getInt(config, "connection-request-timeout-ms", 60000);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(ConfigUtil.getInt(config, "connect-timeout-ms", 10000))
+                .setSocketTimeout(ConfigUtil.getInt(config, "socket-timeout-ms", 60000))
+                .setConnectionRequestTimeout(connectionRequestTimeout)
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(ConfigUtil.getLong(config, "idle-timeout-seconds", 30), TimeUnit.SECONDS)
+                .build();
+    }
+}
@@ -0,0 +1,47 @@
+package org.debian.mavenproxy.request;
+
+import org.debian.mavenproxy.DbManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Files served to the clients, recorded across runs so that the next build of the same
+ * project can fetch them into the local repository before it starts.
+ * <p>
+ * Every file is stored in the served_files table of the state database with the tier of the
+ * repository it was first obtained from: {@code local}, {@code debian} or {@code remote}. The
+ * files of earlier runs are loaded once, new files are queued to the database as they are
+ * served.
+ */
+class ArtifactManifest {
+    static final String LOCAL = "local";
+    static final String DEBIAN = "debian";
+    static final String REMOTE = "remote";
+
+    private final DbManager dbManager;
+    private final LinkedHashMap<String, String> entries;
+
+    ArtifactManifest(DbManager dbManager) {
+        this.dbManager = dbManager;
+        this.entries = new LinkedHashMap<>(dbManager.loadServedFiles());
+    }
+
+    /**
+     * Records a served file, files already in the manifest are ignored.
+     *
+     * @param path request path relative to the repository root
+     */
+    synchronized void record(String path, String tier) {
+        if (entries.putIfAbsent(path, tier) == null) {
+            dbManager.recordServedFile(path, tier);
+        }
+    }
+
+    /**
+     * @return recorded paths and their tiers in the order they were first served
+     */
+    synchronized Map<String, String> getEntries() {
+        return new LinkedHashMap<>(entries);
+    }
+}
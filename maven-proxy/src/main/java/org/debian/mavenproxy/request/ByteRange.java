@@ -0,0 +1,65 @@
+package org.debian.mavenproxy.request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Inclusive byte range of a Range request (RFC 7233).
+ */
+record ByteRange(long first, long last) {
+    // more ranges than this are answered with the full body
+    static final int MAX_RANGES = 32;
+
+    long length() {
+        return last - first + 1;
+    }
+
+    String toContentRange(long size) {
+        return "bytes " + first + "-" + last + "/" + size;
+    }
+
+    /**
+     * @return satisfiable ranges, an empty list if none is satisfiable or null if the header
+     * must be ignored and the full body sent
+     */
+    static List<ByteRange> parse(String header, long size) {
+        if (header == null || !header.toLowerCase(Locale.ROOT).startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        ArrayList<ByteRange> ranges = new ArrayList<>();
+        try {
+            for (var spec : specs) {
+                String range = spec.trim();
+                int dash = range.indexOf('-');
+                if (dash < 0) {
+                    return null;
+                }
+                String start = range.substring(0, dash).trim();
+                String end = range.substring(dash + 1).trim();
+                if (start.isEmpty()) {
+                    long suffix = Long.parseLong(end);
+                    if (suffix > 0 && size > 0) {
+                        ranges.add(new ByteRange(Math.max(0, size - suffix), size - 1));
+                    }
+                    continue;
+                }
+                long first = Long.parseLong(start);
+                long last = end.isEmpty() ? Long.MAX_VALUE : Long.parseLong(end);
+                if (first < 0 || last < first) {
+                    return null;
+                }
+                if (first < size) {
+                    ranges.add(new ByteRange(first, Math.min(last, size - 1)));
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ranges;
+    }
+}
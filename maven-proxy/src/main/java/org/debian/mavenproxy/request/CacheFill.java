@@ -0,0 +1,195 @@
+package org.debian.mavenproxy.request;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.debian.mavenproxy.repositories.LocalRepository;
+import org.debian.mavenproxy.repositories.RepositoryContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores an upstream artifact in the local repository on a background thread.
+ * Clients do not wait for the download to complete, they stream the part already
+ * written from the temporary cache file and follow the download as it progresses.
+ * The artifact only appears in the local repository once it was completely received,
+ * a failed download removes the temporary file and fails the clients streaming it.
+ */
+class CacheFill {
+    private static final Logger logger = LoggerFactory.getLogger(CacheFill.class);
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final RepositoryContent content;
+    private final LocalRepository.CacheWriter writer;
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+    // guarded by this
+    private long written;
+    private boolean finished;
+    private IOException failure;
+
+    CacheFill(RepositoryContent content, LocalRepository.CacheWriter writer) {
+        this.content = content;
+        this.writer = writer;
+    }
+
+    void start() {
+        Thread.startVirtualThread(this::copy);
+    }
+
+    /**
+     * @return future completed with true once the artifact is stored, false if the download failed
+     */
+    CompletableFuture<Boolean> getResult() {
+        return result;
+    }
+
+    /**
+     * @return number of bytes received from the upstream repository so far
+     */
+    synchronized long getReceived() {
+        return written;
+    }
+
+    /**
+     * @return size announced by the upstream repository, -1 if unknown
+     */
+    long getSize() {
+        return content.getSize();
+    }
+
+    /**
+     * Waits until the artifact is stored in the local repository.
+     */
+    void await() throws IOException {
+        awaitAvailable(Long.MAX_VALUE);
+    }
+
+    /**
+     * @return entity streaming the artifact to a client while it is being downloaded
+     */
+    AbstractHttpEntity newEntity(String contentType) {
+        AbstractHttpEntity entity = new Entity();
+        entity.setContentType(contentType);
+        return entity;
+    }
+
+    private void copy() {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try (InputStream is = content.getInputStream(); writer) {
+            OutputStream out = writer.getOutputStream();
+            long total = 0;
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+                total += read;
+                synchronized (this) {
+                    written = total;
+                    notifyAll();
+                }
+            }
+            if (content.getSize() >= 0 && total != content.getSize()) {
+                throw new IOException("Truncated download of " + writer.getTargetPath() + ", received " + total + " of " + content.getSize());
+            }
+            writer.commit();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to store {}: {}", writer.getTargetPath(), e.getMessage());
+            finish(e instanceof IOException io ? io : new IOException(e));
+            return;
+        }
+        finish(null);
+    }
+
+    private synchronized void finish(IOException e) {
+        finished = true;
+        failure = e;
+        notifyAll();
+        result.complete(e == null);
+    }
+
+    /**
+     * Waits until more than {@code position} bytes are available or the download completed.
+     *
+     * @return number of bytes available
+     */
+    private synchronized long awaitAvailable(long position) throws IOException {
+        try {
+            while (written <= position && !finished) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + writer.getTargetPath());
+        }
+        if (failure != null) {
+            throw new IOException("Download of " + writer.getTargetPath() + " failed", failure);
+        }
+        return written;
+    }
+
+    private FileChannel openChannel() throws IOException {
+        synchronized (this) {
+            if (finished) {
+                await();
+                return FileChannel.open(writer.getTargetPath(), StandardOpenOption.READ);
+            }
+        }
+        try {
+            return FileChannel.open(writer.getTempPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // the download completed and the file was moved in the meantime
+            await();
+            return FileChannel.open(writer.getTargetPath(), StandardOpenOption.READ);
+        }
+    }
+
+    private class Entity extends AbstractHttpEntity {
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public long getContentLength() {
+            return content.getSize();
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            await();
+            return Files.newInputStream(writer.getTargetPath());
+        }
+
+        @Override
+        public void writeTo(OutputStream outStream) throws IOException {
+            try (FileChannel channel = openChannel()) {
+                WritableByteChannel target = Channels.newChannel(outStream);
+                long position = 0;
+                while (true) {
+                    long available = awaitAvailable(position);
+                    if (available <= position) {
+                        break;
+                    }
+                    while (position < available) {
+                        position += channel.transferTo(position, available - position, target);
+                    }
+                }
+            }
+            outStream.flush();
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.debian.mavenproxy.request;
+
+import org.debian.mavenproxy.DbManager;
+import org.debian.mavenproxy.repositories.ChecksumAlgorithm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Digests of the files in the local repository keyed by file identity (path, size and
+ * modification time). A file is read once to compute all checksums, later requests are
+ * answered from memory or from the checksums table.
+ */
+class ChecksumIndex {
+    private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final DbManager dbManager;
+
+    private record Entry(long size, long lastModified, Map<ChecksumAlgorithm, String> digests) {
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    /**
+     * @param dbManager database storing the digests, may be null
+     */
+    ChecksumIndex(DbManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    /**
+     * @return hex digest of the file
+     */
+    String digest(Path file, ChecksumAlgorithm algorithm) throws IOException {
+        Path key = file.toAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.matches(attributes)) {
+            entry = load(key, attributes);
+            if (entry == null) {
+                entry = compute(key);
+                if (dbManager != null) {
+                    HashMap<String, String> digests = new HashMap<>();
+                    entry.digests().forEach((alg, digest) -> digests.put(alg.getExtension(), digest));
+                    dbManager.storeChecksums(key.toString(), entry.size(), entry.lastModified(), digests);
+                }
+            }
+            entries.put(key, entry);
+        }
+        return entry.digests().get(algorithm);
+    }
+
+    private Entry load(Path file, BasicFileAttributes attributes) {
+        if (dbManager == null) {
+            return null;
+        }
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Map<String, String> stored = dbManager.findChecksums(file.toString(), size, lastModified);
+        EnumMap<ChecksumAlgorithm, String> digests = new EnumMap<>(ChecksumAlgorithm.class);
+        for (var algorithm : ChecksumAlgorithm.values()) {
+            String digest = stored.get(algorithm.getExtension());
+            if (digest == null) {
+                return null;
+            }
+            digests.put(algorithm, digest);
+        }
+        return new Entry(size, lastModified, digests);
+    }
+
+    private static Entry compute(Path file) throws IOException {
+        ChecksumAlgorithm[] algorithms = ChecksumAlgorithm.values();
+        MessageDigest[] digests = new MessageDigest[algorithms.length];
+        OutputStream out = OutputStream.nullOutputStream();
+        for (int i = 0; i < algorithms.length; ++i) {
+            digests[i] = algorithms[i].newDigest();
+            out = new DigestOutputStream(out, digests[i]);
+        }
+        BasicFileAttributes attributes;
+        try (InputStream is = Files.newInputStream(file)) {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            is.transferTo(out);
+        }
+        EnumMap<ChecksumAlgorithm, String> result = new EnumMap<>(ChecksumAlgorithm.class);
+        for (int i = 0; i < algorithms.length; ++i) {
+            result.put(algorithms[i], HexFormat.of().formatHex(digests[i].digest()));
+        }
+        return new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), result);
+    }
+}
@@ -0,0 +1,180 @@
+package org.debian.mavenproxy.request;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.DateUtils;
+import org.debian.mavenproxy.repositories.AbstractRepository;
+import org.debian.mavenproxy.repositories.ArtifactMetadata;
+import org.debian.mavenproxy.repositories.ChecksumAlgorithm;
+
+import java.io.FileNotFoundException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Validators sent by the client (If-None-Match, If-Modified-Since). Responses carry an ETag
+ * and Last-Modified and are answered with 304 when the client copy is current.
+ * Range and If-Range select the parts of the artifact sent in a 206 response, Accept-Encoding
+ * whether a stored gzip variant may be sent instead of the artifact.
+ */
+public class ConditionalRequest {
+    public static final ConditionalRequest NONE = new ConditionalRequest(null, null, null, null, null);
+
+    private final String ifNoneMatch;
+    private final Date ifModifiedSince;
+    private final String range;
+    private final String ifRange;
+    private final String acceptEncoding;
+
+    private ConditionalRequest(String ifNoneMatch, Date ifModifiedSince, String range, String ifRange, String acceptEncoding) {
+        this.ifNoneMatch = ifNoneMatch;
+        this.ifModifiedSince = ifModifiedSince;
+        this.range = range;
+        this.ifRange = ifRange;
+        this.acceptEncoding = acceptEncoding;
+    }
+
+    public static ConditionalRequest of(HttpRequest request) {
+        Header ifModifiedSince = request.getFirstHeader("If-Modified-Since");
+        return new ConditionalRequest(headerValue(request, "If-None-Match"),
+                ifModifiedSince != null ? DateUtils.parseDate(ifModifiedSince.getValue()) : null,
+                headerValue(request, "Range"),
+                headerValue(request, "If-Range"),
+                headerValue(request, "Accept-Encoding"));
+    }
+
+    private static String headerValue(HttpRequest request, String name) {
+        Header header = request.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    /**
+     * @return requested ranges of the artifact, an empty list if none is satisfiable or null if
+     * the full body must be sent (no Range header, or If-Range does not match the current artifact)
+     */
+    List<ByteRange> getRanges(String etag, long lastModified, long size) {
+        if (range == null || !isRangeCurrent(etag, lastModified)) {
+            return null;
+        }
+        return ByteRange.parse(range, size);
+    }
+
+    /**
+     * Range requests always get the identity encoding, the ranges are offsets into the artifact.
+     *
+     * @return true if the client accepts a gzip encoded body
+     */
+    boolean acceptsGzip() {
+        if (range != null || acceptEncoding == null) {
+            return false;
+        }
+        for (var coding : acceptEncoding.split(",")) {
+            String[] params = coding.split(";");
+            String name = params[0].trim().toLowerCase(Locale.ROOT);
+            if (name.equals("gzip") || name.equals("x-gzip") || name.equals("*")) {
+                return qvalue(params) > 0;
+            }
+        }
+        return false;
+    }
+
+    private static double qvalue(String[] params) {
+        for (int i = 1; i < params.length; ++i) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private boolean isRangeCurrent(String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            // If-Range requires a strong comparison
+            return etag != null && !etag.startsWith("W/") && etag.equals(ifRange.trim());
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        Date date = DateUtils.parseDate(ifRange);
+        return date != null && lastModified > 0 && lastModified / 1000 == date.getTime() / 1000;
+    }
+
+    /**
+     * The ETag is the SHA-1 stored next to the file, so it is the same whichever tier the
+     * artifact came from. Files without a checksum get a weak ETag from size and modification time.
+     */
+    static String etag(AbstractRepository source, String groupId, String artifactId, String version, String fileName, ArtifactMetadata metadata) {
+        try {
+            return "\"" + source.getChecksum(groupId, artifactId, version, fileName, ChecksumAlgorithm.SHA1) + "\"";
+        } catch (FileNotFoundException e) {
+            return "W/\"" + Long.toHexString(metadata.size()) + "-" + Long.toHexString(metadata.lastModified()) + "\"";
+        }
+    }
+
+    static String etag(byte[] content) {
+        return "\"" + HexFormat.of().formatHex(ChecksumAlgorithm.SHA1.newDigest().digest(content)) + "\"";
+    }
+
+    /**
+     * @return ETag of the gzip variant, distinct from the ETag of the artifact it was compressed from
+     */
+    static String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+
+    /**
+     * Adds the validators to the response and answers 304 if the client copy is current.
+     *
+     * @param lastModified modification time in milliseconds, -1 if unknown
+     * @return true if the response was answered with 304 and no body must be written
+     */
+    boolean writeValidators(HttpResponse response, String etag, long lastModified) {
+        if (etag != null) {
+            response.setHeader("ETag", etag);
+        }
+        if (lastModified > 0) {
+            response.setHeader("Last-Modified", DateUtils.formatDate(new Date(lastModified)));
+        }
+        if (!isNotModified(etag, lastModified)) {
+            return false;
+        }
+        response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+        response.setEntity(null);
+        return true;
+    }
+
+    private boolean isNotModified(String etag, long lastModified) {
+        // If-Modified-Since is ignored when If-None-Match is present (RFC 7232 section 6)
+        if (ifNoneMatch != null) {
+            return etag != null && matches(etag);
+        }
+        return ifModifiedSince != null && lastModified > 0 && lastModified / 1000 <= ifModifiedSince.getTime() / 1000;
+    }
+
+    private boolean matches(String etag) {
+        String opaque = stripWeak(etag);
+        for (var candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
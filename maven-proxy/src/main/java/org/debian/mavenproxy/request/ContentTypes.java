@@ -11,8 +11,11 @@ class ContentTypes {
         contentTypes.put(".war", "application/java-archive");
         contentTypes.put(".pom", "application/xml");
         contentTypes.put(".xml", "application/xml");
+        contentTypes.put(".module", "application/json");
         contentTypes.put(".sha1", "text/plain");
         contentTypes.put(".md5", "text/plain");
+        contentTypes.put(".sha256", "text/plain");
+        contentTypes.put(".sha512", "text/plain");
     }
 
     public String determineContentType(String filename) {
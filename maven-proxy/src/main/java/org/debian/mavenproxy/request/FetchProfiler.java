@@ -0,0 +1,336 @@
+package org.debian.mavenproxy.request;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.debian.mavenproxy.ConfigUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timeline of the requests served during a build, written as a report once the build finished.
+ * <p>
+ * Every request records its arrival, the tier that served it, the time spent finding and
+ * connecting to the upstream repository, the bytes served and the number of requests in flight
+ * when it arrived. A request with a body ends once the body was written to the client, which
+ * for a download still in progress is when the download completed. The report lists the slowest
+ * requests, the time spent per tier, the share of the build during which at least one request
+ * was pending on the proxy and the critical path: the chain of requests, each arriving after the
+ * previous one completed, with the largest total duration. Builds resolve most of their
+ * dependency graph this way, a POM is only requested once the POM referencing it was parsed, so
+ * the chain is the part of the build's wait no amount of client parallelism hides.
+ */
+public class FetchProfiler {
+    private static final Logger logger = LoggerFactory.getLogger(FetchProfiler.class);
+
+    private final boolean enabled;
+    private final Path report;
+    private final int top;
+    private final int maxRequests;
+    private final ProxyMetrics metrics;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Trace> traces = new ConcurrentLinkedQueue<>();
+
+    /**
+     * One request of the timeline, times are {@link System#nanoTime()} values.
+     */
+    static final class Trace {
+        final String path;
+        final long start;
+        final int concurrency;
+        long end;
+        int tier;
+        // time until the upstream repository answered, -1 if the request was not sent upstream
+        long upstream = -1;
+        // set by the download into the local repository for requests sent upstream
+        volatile long bytes = -1;
+
+        Trace(String path, long start, int concurrency) {
+            this.path = path;
+            this.start = start;
+            this.concurrency = concurrency;
+        }
+
+        long duration() {
+            return end - start;
+        }
+    }
+
+    FetchProfiler(ProxyMetrics metrics, Map<String, Object> config) {
+        this.metrics = metrics;
+        this.enabled = ConfigUtil.getBoolean(config, "enabled", false);
+        this.report = Path.of(ConfigUtil.getString(config, "report", "fetch-profile.txt"));
+        this.top = Math.max(1, ConfigUtil.getInt(config, "top", 20));
+        this.maxRequests = Math.max(1, ConfigUtil.getInt(config, "max-requests", 1_000_000));
+    }
+
+    /**
+     * @return trace of the request, null if the profiler is disabled
+     */
+    Trace begin(String path) {
+        if (!enabled) {
+            return null;
+        }
+        return new Trace(path, System.nanoTime(), active.incrementAndGet());
+    }
+
+    /**
+     * @param bytes length of the response body, -1 if unknown
+     */
+    void end(Trace trace, int tier, long bytes) {
+        if (trace == null) {
+            return;
+        }
+        active.decrementAndGet();
+        trace.end = System.nanoTime();
+        trace.tier = tier;
+        if (trace.upstream < 0) {
+            trace.bytes = bytes;
+        }
+        // the timeline is bounded, requests beyond the limit are not profiled
+        if (recorded.incrementAndGet() <= maxRequests) {
+            traces.add(trace);
+        }
+    }
+
+    /**
+     * Ends the trace once the body of the response was written.
+     *
+     * @return entity to send in place of {@code entity}
+     */
+    HttpEntity endAfterBody(Trace trace, int tier, long bytes, HttpEntity entity) {
+        if (trace == null) {
+            return entity;
+        }
+        return new TracedEntity(entity, () -> end(trace, tier, bytes));
+    }
+
+    /**
+     * Entity running {@code onEnd} once, after the first write or read of the body finished.
+     */
+    private static final class TracedEntity extends HttpEntityWrapper {
+        private final Runnable onEnd;
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        TracedEntity(HttpEntity entity, Runnable onEnd) {
+            super(entity);
+            this.onEnd = onEnd;
+        }
+
+        private void end() {
+            if (ended.compareAndSet(false, true)) {
+                onEnd.run();
+            }
+        }
+
+        @Override
+        public void writeTo(OutputStream outStream) throws IOException {
+            try {
+                super.writeTo(outStream);
+            } finally {
+                end();
+            }
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        end();
+                    }
+                }
+            };
+        }
+    }
+
+    void upstream(Trace trace, long nanos) {
+        if (trace != null) {
+            trace.upstream = nanos;
+        }
+    }
+
+    void received(Trace trace, long bytes) {
+        if (trace != null) {
+            trace.bytes = bytes;
+        }
+    }
+
+    /**
+     * Writes the report of the requests served so far, does nothing if the profiler is disabled.
+     *
+     * @param buildNanos wall time of the build
+     */
+    public void writeReport(long buildNanos) {
+        if (!enabled) {
+            return;
+        }
+        List<Trace> timeline = new ArrayList<>(traces);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8))) {
+            writeReport(out, timeline, buildNanos);
+        } catch (IOException e) {
+            logger.warn("Unable to write fetch profile {}: {}", report, e.getMessage());
+            return;
+        }
+        logger.info("Fetch profile of {} requests written to {}", timeline.size(), report.toAbsolutePath());
+    }
+
+    private void writeReport(PrintWriter out, List<Trace> timeline, long buildNanos) {
+        long busy = busyTime(timeline);
+        out.printf(Locale.ROOT, "Fetch profile: %d requests, build %.1f s, proxy busy %.1f s (%s of the build)%n",
+                timeline.size(), seconds(buildNanos), seconds(busy), share(busy, buildNanos));
+        if (recorded.get() > maxRequests) {
+            out.printf(Locale.ROOT, "%d requests beyond the first %d were not profiled%n", recorded.get() - maxRequests, maxRequests);
+        }
+
+        out.printf(Locale.ROOT, "%nSlowest requests%n");
+        out.printf(Locale.ROOT, "%12s %12s %12s %10s  %-10s %s%n", "duration ms", "upstream ms", "bytes", "concurrent", "tier", "path");
+        List<Trace> slowest = new ArrayList<>(timeline);
+        slowest.sort(Comparator.comparingLong(Trace::duration).reversed());
+        for (var trace : slowest.subList(0, Math.min(top, slowest.size()))) {
+            writeTrace(out, trace);
+        }
+
+        out.printf(Locale.ROOT, "%nTime per tier%n");
+        out.printf(Locale.ROOT, "%10s %12s %12s %14s  %s%n", "requests", "total ms", "upstream ms", "bytes", "tier");
+        LinkedHashMap<Integer, long[]> tiers = new LinkedHashMap<>();
+        for (var trace : timeline) {
+            long[] totals = tiers.computeIfAbsent(trace.tier, k -> new long[4]);
+            totals[0]++;
+            totals[1] += trace.duration();
+            totals[2] += Math.max(0, trace.upstream);
+            totals[3] += Math.max(0, trace.bytes);
+        }
+        tiers.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Integer, long[]> e) -> e.getValue()[1]).reversed())
+                .forEach(e -> out.printf(Locale.ROOT, "%10d %12.1f %12.1f %14d  %s%n", e.getValue()[0],
+                        millis(e.getValue()[1]), millis(e.getValue()[2]), e.getValue()[3], metrics.getTierName(e.getKey())));
+
+        List<Trace> path = criticalPath(timeline);
+        long length = path.stream().mapToLong(Trace::duration).sum();
+        out.printf(Locale.ROOT, "%nCritical path: %d requests, %.1f s (%s of the build)%n", path.size(), seconds(length),
+                share(length, buildNanos));
+        out.printf(Locale.ROOT, "%12s %12s %12s %10s  %-10s %s%n", "duration ms", "upstream ms", "bytes", "concurrent", "tier", "path");
+        for (var trace : path) {
+            writeTrace(out, trace);
+        }
+    }
+
+    private void writeTrace(PrintWriter out, Trace trace) {
+        out.printf(Locale.ROOT, "%12.1f %12s %12s %10d  %-10s %s%n", millis(trace.duration()),
+                trace.upstream < 0 ? "-" : String.format(Locale.ROOT, "%.1f", millis(trace.upstream)),
+                trace.bytes < 0 ? "-" : Long.toString(trace.bytes), trace.concurrency,
+                metrics.getTierName(trace.tier), trace.path);
+    }
+
+    /**
+     * @return time during which at least one request was in flight
+     */
+    static long busyTime(List<Trace> timeline) {
+        List<Trace> sorted = new ArrayList<>(timeline);
+        sorted.sort(Comparator.comparingLong(t -> t.start));
+        long busy = 0;
+        long from = 0;
+        long to = 0;
+        boolean open = false;
+        for (var trace : sorted) {
+            if (open && trace.start <= to) {
+                to = Math.max(to, trace.end);
+                continue;
+            }
+            if (open) {
+                busy += to - from;
+            }
+            from = trace.start;
+            to = trace.end;
+            open = true;
+        }
+        return open ? busy + to - from : busy;
+    }
+
+    /**
+     * @return chain of requests, each arriving after the previous one completed, with the
+     * largest total duration, in arrival order
+     */
+    static List<Trace> criticalPath(List<Trace> timeline) {
+        int count = timeline.size();
+        if (count == 0) {
+            return List.of();
+        }
+        Trace[] sorted = timeline.toArray(Trace[]::new);
+        Arrays.sort(sorted, Comparator.comparingLong(t -> t.end));
+        long[] ends = new long[count];
+        for (int i = 0; i < count; ++i) {
+            ends[i] = sorted[i].end;
+        }
+        // best[i]: longest chain ending with request i, bestUpTo[i]: request ending the longest chain among 0..i
+        long[] best = new long[count];
+        int[] previous = new int[count];
+        int[] bestUpTo = new int[count];
+        for (int i = 0; i < count; ++i) {
+            int before = lastEndingBy(ends, i, sorted[i].start);
+            previous[i] = before < 0 ? -1 : bestUpTo[before];
+            best[i] = sorted[i].duration() + (before < 0 ? 0 : best[previous[i]]);
+            bestUpTo[i] = i > 0 && best[bestUpTo[i - 1]] >= best[i] ? bestUpTo[i - 1] : i;
+        }
+        ArrayList<Trace> path = new ArrayList<>();
+        for (int i = bestUpTo[count - 1]; i >= 0; i = previous[i]) {
+            path.add(sorted[i]);
+        }
+        return path.reversed();
+    }
+
+    /**
+     * @return last index below {@code limit} whose end is not after {@code time}, -1 if there is none
+     */
+    private static int lastEndingBy(long[] ends, int limit, long time) {
+        int low = 0;
+        int high = limit - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] <= time) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static String share(long nanos, long total) {
+        return total > 0 ? String.format(Locale.ROOT, "%.1f%%", 100.0 * nanos / total) : "-";
+    }
+}
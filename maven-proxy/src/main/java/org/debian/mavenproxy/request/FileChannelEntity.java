@@ -0,0 +1,125 @@
+package org.debian.mavenproxy.request;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Entity streaming a cached file to the client with {@link FileChannel#transferTo}.
+ * The file is never loaded into memory, heap use does not depend on the artifact size.
+ */
+class FileChannelEntity extends AbstractHttpEntity {
+    private final Path path;
+    private final long offset;
+    private final long length;
+
+    FileChannelEntity(Path path, String contentType) throws IOException {
+        this(path, contentType, 0, Files.size(path));
+    }
+
+    /**
+     * Entity for the part of the file starting at {@code offset}.
+     */
+    FileChannelEntity(Path path, String contentType, long offset, long length) {
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+        setContentType(contentType);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        InputStream is = Files.newInputStream(path);
+        is.skipNBytes(offset);
+        return new LimitedInputStream(is, length);
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                --remaining;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = super.read(b, off, (int) Math.min(len, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transfer(channel, offset, length, Channels.newChannel(outStream), path);
+        }
+        outStream.flush();
+    }
+
+    static void transfer(FileChannel channel, long offset, long length, WritableByteChannel target, Path path) throws IOException {
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            long transferred = channel.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file " + path + " at " + position + " of " + end);
+            }
+            position += transferred;
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -3,13 +3,19 @@ package org.debian.mavenproxy.request;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
 import org.debian.mavenproxy.Artifact;
 import org.debian.mavenproxy.repositories.AbstractRepository;
+import org.debian.mavenproxy.repositories.ArtifactMetadata;
+import org.debian.mavenproxy.repositories.LocalRepository;
 import org.debian.mavenproxy.repositories.RepositoryContent;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
 
 public class GetRepositoryResponse implements IRepositoryResponse {
     private final AbstractRepository source;
@@ -19,17 +25,114 @@ public class GetRepositoryResponse implements IRepositoryResponse {
         this.source = source;
     }
     @Override
-    public void writeResponse(HttpResponse response, String fileName, Artifact requestedArt) throws FileNotFoundException {
-        RepositoryContent content =  source.getArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName);
-        byte[] data;
-        try (InputStream is = content.getInputStream()) {
-            data = is.readAllBytes();
-            String contentType = contentTypes.determineContentType(fileName);
+    public void writeResponse(HttpResponse response, String fileName, Artifact requestedArt, ConditionalRequest conditions) throws FileNotFoundException {
+        // validators are decided from a stat and the checksum sidecar, the artifact is only opened for a full response
+        ArtifactMetadata metadata = source.getArtifactMetadata(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName);
+        String etag = ConditionalRequest.etag(source, requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName, metadata);
+        String encodedFileName = negotiateEncoding(response, source, requestedArt, fileName, conditions);
+        if (encodedFileName != null) {
+            etag = ConditionalRequest.gzipEtag(etag);
+        }
+        if (conditions.writeValidators(response, etag, metadata.lastModified())) {
+            return;
+        }
+        String contentType = contentTypes.determineContentType(fileName);
+        RepositoryContent content =  source.getArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(),
+                encodedFileName != null ? encodedFileName : fileName);
+        try {
+            if (encodedFileName != null) {
+                response.setHeader("Content-Encoding", "gzip");
+            } else if (content.getPath() != null) {
+                response.setHeader("Accept-Ranges", "bytes");
+                List<ByteRange> ranges = conditions.getRanges(etag, metadata.lastModified(), metadata.size());
+                if (ranges != null) {
+                    writeRanges(response, content.getPath(), contentType, ranges, metadata.size());
+                    return;
+                }
+            }
+            if (content.getPath() != null) {
+                response.setEntity(new FileChannelEntity(content.getPath(), contentType));
+            } else {
+                response.setEntity(new InputStreamEntity(content.getInputStream(), ContentType.parse(contentType)));
+            }
             response.setStatusCode(HttpStatus.SC_OK);
             response.setHeader("Content-Type", contentType);
-            response.setEntity(new ByteArrayEntity(data));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(e.getMessage());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Picks the gzip variant stored with compressible files if the client accepts it.
+     *
+     * @return file name of the gzip variant to send, null to send the file itself
+     */
+    static String negotiateEncoding(HttpResponse response, AbstractRepository source, Artifact requestedArt, String fileName, ConditionalRequest conditions) {
+        if (!LocalRepository.isCompressible(fileName)) {
+            return null;
+        }
+        response.setHeader("Vary", "Accept-Encoding");
+        if (!conditions.acceptsGzip()) {
+            return null;
+        }
+        String encodedFileName = fileName + LocalRepository.COMPRESSED_SUFFIX;
+        try {
+            source.getArtifactMetadata(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), encodedFileName);
+            return encodedFileName;
+        } catch (FileNotFoundException e) {
+            // stored before variants were written
+            return null;
+        }
+    }
+
+    /**
+     * Answers a Range request with 206, or 416 if no range is satisfiable.
+     */
+    private static void writeRanges(HttpResponse response, Path path, String contentType, List<ByteRange> ranges, long size) {
+        if (ranges.isEmpty()) {
+            response.setStatusCode(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + size);
+            return;
+        }
+        response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.getFirst();
+            response.setEntity(new FileChannelEntity(path, contentType, range.first(), range.length()));
+            response.setHeader("Content-Range", range.toContentRange(size));
+            response.setHeader("Content-Type", contentType);
+        } else {
+            MultipartRangeEntity entity = new MultipartRangeEntity(path, contentType, ranges, size);
+            response.setEntity(entity);
+            response.setHeader(entity.getContentType());
+        }
+    }
+
+    @Override
+    public void writePendingResponse(HttpResponse response, String fileName, Artifact requestedArt, CacheFill fill, ConditionalRequest conditions) {
+        String contentType = contentTypes.determineContentType(fileName);
+        response.setEntity(fill.newEntity(contentType));
+        response.setStatusCode(HttpStatus.SC_OK);
+        response.setHeader("Content-Type", contentType);
+    }
+
+    @Override
+    public void writeGeneratedResponse(HttpResponse response, String fileName, byte[] content, byte[] compressed, ConditionalRequest conditions) {
+        boolean encode = compressed != null && conditions.acceptsGzip();
+        if (compressed != null) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        String etag = ConditionalRequest.etag(content);
+        if (conditions.writeValidators(response, encode ? ConditionalRequest.gzipEtag(etag) : etag, -1)) {
+            return;
+        }
+        String contentType = contentTypes.determineContentType(fileName);
+        if (encode) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setEntity(new ByteArrayEntity(encode ? compressed : content, ContentType.parse(contentType)));
+        response.setStatusCode(HttpStatus.SC_OK);
+        response.setHeader("Content-Type", contentType);
+    }
 }
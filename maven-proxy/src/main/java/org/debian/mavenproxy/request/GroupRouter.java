@@ -0,0 +1,133 @@
+package org.debian.mavenproxy.request;
+
+import org.debian.mavenproxy.Artifact;
+import org.debian.mavenproxy.DbManager;
+import org.debian.mavenproxy.repositories.RemoteRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Learns which remote serves a groupId namespace.
+ * Successful fetches vote for their remote in a trie of groupId segments, a lookup
+ * picks the remote with most votes at the deepest known prefix of the requested groupId.
+ * Fetches are persisted to the remote_artifacts table and replayed at startup.
+ */
+class GroupRouter {
+    // do not learn routes for top level prefixes like "org" or "com"
+    private static final int MIN_PREFIX_SEGMENTS = 2;
+
+    private final List<RemoteRepository> remoteRepositories;
+    private final DbManager dbManager;
+    private final Node root;
+
+    /**
+     * @param dbManager database storing fetched artifacts, may be null
+     */
+    GroupRouter(List<RemoteRepository> remoteRepositories, DbManager dbManager) {
+        this.remoteRepositories = remoteRepositories;
+        this.dbManager = dbManager;
+        this.root = new Node(remoteRepositories.size());
+        if (dbManager != null) {
+            for (var route : dbManager.loadRemoteRoutes()) {
+                int index = findRemote(route.remoteUrl());
+                if (index >= 0) {
+                    learn(route.groupId(), index, route.count());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return remotes ordered with the remote most likely serving the groupId first
+     */
+    List<RemoteRepository> order(String groupId) {
+        int preferred = route(groupId);
+        if (preferred <= 0) {
+            return remoteRepositories;
+        }
+        List<RemoteRepository> ordered = new ArrayList<>(remoteRepositories.size());
+        ordered.add(remoteRepositories.get(preferred));
+        for (int i = 0; i < remoteRepositories.size(); ++i) {
+            if (i != preferred) {
+                ordered.add(remoteRepositories.get(i));
+            }
+        }
+        return ordered;
+    }
+
+    void recordFetch(Artifact artifact, String fileName, RemoteRepository repository) {
+        int index = remoteRepositories.indexOf(repository);
+        if (index < 0) {
+            return;
+        }
+        learn(artifact.groupId(), index, 1);
+        if (dbManager != null) {
+            String requestPath = "/" + artifact.groupId().replace(".", "/") + "/" + artifact.name() + "/" + artifact.version() + "/" + fileName;
+            dbManager.logUniqueArtifact(artifact.groupId(), artifact.name(), artifact.version(), requestPath, repository.getRepositoryUrl());
+        }
+    }
+
+    int route(String groupId) {
+        String[] segments = groupId.split("\\.");
+        Node node = root;
+        int found = -1;
+        for (int depth = 0; depth < segments.length; ++depth) {
+            node = node.children.get(segments[depth]);
+            if (node == null) {
+                break;
+            }
+            if (depth + 1 >= MIN_PREFIX_SEGMENTS) {
+                int best = node.best();
+                if (best >= 0) {
+                    found = best;
+                }
+            }
+        }
+        return found;
+    }
+
+    private void learn(String groupId, int index, int votes) {
+        String[] segments = groupId.split("\\.");
+        Node node = root;
+        for (int depth = 0; depth < segments.length; ++depth) {
+            node = node.children.computeIfAbsent(segments[depth], k -> new Node(remoteRepositories.size()));
+            if (depth + 1 >= MIN_PREFIX_SEGMENTS) {
+                node.votes.addAndGet(index, votes);
+            }
+        }
+    }
+
+    private int findRemote(String remoteUrl) {
+        for (int i = 0; i < remoteRepositories.size(); ++i) {
+            if (remoteRepositories.get(i).getRepositoryUrl().equals(remoteUrl)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class Node {
+        private final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>();
+        private final AtomicIntegerArray votes;
+
+        private Node(int remotes) {
+            votes = new AtomicIntegerArray(remotes);
+        }
+
+        private int best() {
+            int best = -1;
+            int bestVotes = 0;
+            for (int i = 0; i < votes.length(); ++i) {
+                int v = votes.get(i);
+                if (v > bestVotes) {
+                    best = i;
+                    bestVotes = v;
+                }
+            }
+            return best;
+        }
+    }
+}
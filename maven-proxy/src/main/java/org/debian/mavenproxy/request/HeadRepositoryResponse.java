@@ -2,10 +2,14 @@ package org.debian.mavenproxy.request;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.entity.BasicHttpEntity;
 import org.debian.mavenproxy.Artifact;
 import org.debian.mavenproxy.repositories.AbstractRepository;
+import org.debian.mavenproxy.repositories.ArtifactMetadata;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 
 public class HeadRepositoryResponse implements IRepositoryResponse {
     private final AbstractRepository source;
@@ -15,11 +19,77 @@ public class HeadRepositoryResponse implements IRepositoryResponse {
         this.source = source;
     }
     @Override
-    public void writeResponse(HttpResponse response, String fileName, Artifact requestedArt) throws FileNotFoundException {
-        int artifactSize =  source.getArtifactSize(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName);
+    public void writeResponse(HttpResponse response, String fileName, Artifact requestedArt, ConditionalRequest conditions) throws FileNotFoundException {
+        ArtifactMetadata metadata = source.getArtifactMetadata(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName);
+        String etag = ConditionalRequest.etag(source, requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName, metadata);
+        String encodedFileName = GetRepositoryResponse.negotiateEncoding(response, source, requestedArt, fileName, conditions);
+        if (encodedFileName != null) {
+            etag = ConditionalRequest.gzipEtag(etag);
+        }
+        if (conditions.writeValidators(response, etag, metadata.lastModified())) {
+            return;
+        }
+        if (encodedFileName != null) {
+            ArtifactMetadata encoded = source.getArtifactMetadata(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), encodedFileName);
+            writeHeaders(response, fileName, encoded.size());
+            response.setHeader("Content-Encoding", "gzip");
+            return;
+        }
+        writeHeaders(response, fileName, metadata.size());
+        response.setHeader("Accept-Ranges", "bytes");
+    }
+
+    private void writeHeaders(HttpResponse response, String fileName, long size) {
         String contentType = contentTypes.determineContentType(fileName);
         response.setStatusCode(HttpStatus.SC_OK);
         response.setHeader("Content-Type", contentType);
-        response.setHeader("Content-Length", "" + artifactSize);
+        // the server never sends a body for HEAD, the entity only carries the Content-Length
+        // (setting the header directly is rejected by the response interceptors)
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContentLength(size);
+        entity.setContent(InputStream.nullInputStream());
+        response.setEntity(entity);
+    }
+
+    /**
+     * Answers a HEAD for an artifact that is not cached from the attributes reported by the
+     * upstream tier, without downloading it. No ETag is sent, the cached copy has its own.
+     */
+    public void writeMetadataResponse(HttpResponse response, String fileName, ArtifactMetadata metadata, ConditionalRequest conditions) {
+        if (conditions.writeValidators(response, null, metadata.lastModified())) {
+            return;
+        }
+        writeHeaders(response, fileName, metadata.size());
+    }
+
+    @Override
+    public void writePendingResponse(HttpResponse response, String fileName, Artifact requestedArt, CacheFill fill, ConditionalRequest conditions) throws FileNotFoundException {
+        if (fill.getSize() >= 0) {
+            writeHeaders(response, fileName, fill.getSize());
+            return;
+        }
+        // only the stored artifact tells the size
+        try {
+            fill.await();
+        } catch (IOException e) {
+            throw new FileNotFoundException(e.getMessage());
+        }
+        writeResponse(response, fileName, requestedArt, conditions);
+    }
+
+    @Override
+    public void writeGeneratedResponse(HttpResponse response, String fileName, byte[] content, byte[] compressed, ConditionalRequest conditions) {
+        boolean encode = compressed != null && conditions.acceptsGzip();
+        if (compressed != null) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+        String etag = ConditionalRequest.etag(content);
+        if (conditions.writeValidators(response, encode ? ConditionalRequest.gzipEtag(etag) : etag, -1)) {
+            return;
+        }
+        writeHeaders(response, fileName, encode ? compressed.length : content.length);
+        if (encode) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
     }
 }
@@ -6,5 +6,17 @@ import org.debian.mavenproxy.Artifact;
 import java.io.FileNotFoundException;
 
 public interface IRepositoryResponse {
-    void writeResponse(HttpResponse response, String fileName, Artifact requestedArt) throws FileNotFoundException;
+    void writeResponse(HttpResponse response, String fileName, Artifact requestedArt, ConditionalRequest conditions) throws FileNotFoundException;
+
+    /**
+     * Writes the response for an artifact that is still being stored in the local repository.
+     */
+    void writePendingResponse(HttpResponse response, String fileName, Artifact requestedArt, CacheFill fill, ConditionalRequest conditions) throws FileNotFoundException;
+
+    /**
+     * Writes the response for content generated by the proxy, e.g. a checksum.
+     *
+     * @param compressed gzip encoded content, null if the content is not available compressed
+     */
+    void writeGeneratedResponse(HttpResponse response, String fileName, byte[] content, byte[] compressed, ConditionalRequest conditions);
 }
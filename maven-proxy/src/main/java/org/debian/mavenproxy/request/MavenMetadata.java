@@ -0,0 +1,184 @@
+package org.debian.mavenproxy.request;
+
+import org.debian.mavenproxy.repositories.MavenVersionComparator;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Contents of an artifact or group level maven-metadata.xml: the known versions of an
+ * artifact, or the plugins of a group used for plugin prefix resolution.
+ */
+record MavenMetadata(String groupId, String artifactId, List<String> versions, List<Plugin> plugins, long lastUpdated) {
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newFactory();
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
+    private static final DateTimeFormatter LAST_UPDATED = DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+
+    static {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    record Plugin(String name, String prefix, String artifactId) {
+    }
+
+    boolean isEmpty() {
+        return versions.isEmpty() && plugins.isEmpty();
+    }
+
+    /**
+     * Merges the versions and plugins of the documents, versions are sorted in maven order.
+     */
+    static MavenMetadata merge(String groupId, String artifactId, List<MavenMetadata> sources) {
+        TreeSet<String> versions = new TreeSet<>(MavenVersionComparator.INSTANCE.thenComparing(String::compareTo));
+        LinkedHashMap<String, Plugin> plugins = new LinkedHashMap<>();
+        long lastUpdated = 0;
+        for (var source : sources) {
+            versions.addAll(source.versions());
+            for (var plugin : source.plugins()) {
+                plugins.putIfAbsent(plugin.prefix(), plugin);
+            }
+            lastUpdated = Math.max(lastUpdated, source.lastUpdated());
+        }
+        return new MavenMetadata(groupId, artifactId, List.copyOf(versions), List.copyOf(plugins.values()), lastUpdated);
+    }
+
+    MavenMetadata withVersion(String version, long updated) {
+        if (versions.contains(version)) {
+            return this;
+        }
+        return merge(groupId, artifactId, List.of(this, new MavenMetadata(groupId, artifactId, List.of(version), List.of(), updated)));
+    }
+
+    static MavenMetadata parse(byte[] data) throws IOException {
+        String groupId = null;
+        String artifactId = null;
+        long lastUpdated = 0;
+        ArrayList<String> versions = new ArrayList<>();
+        ArrayList<Plugin> plugins = new ArrayList<>();
+        String name = null;
+        String prefix = null;
+        String pluginArtifactId = null;
+        ArrayList<String> path = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        try {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(data));
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    path.add(reader.getLocalName());
+                    text.setLength(0);
+                    if (reader.getLocalName().equals("plugin")) {
+                        name = prefix = pluginArtifactId = null;
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String element = path.removeLast();
+                    String parent = path.isEmpty() ? "" : path.getLast();
+                    String value = text.toString().trim();
+                    text.setLength(0);
+                    switch (parent + "/" + element) {
+                        case "metadata/groupId" -> groupId = value;
+                        case "metadata/artifactId" -> artifactId = value;
+                        case "versions/version" -> versions.add(value);
+                        case "versioning/lastUpdated" -> lastUpdated = parseLastUpdated(value);
+                        case "plugin/name" -> name = value;
+                        case "plugin/prefix" -> prefix = value;
+                        case "plugin/artifactId" -> pluginArtifactId = value;
+                        case "plugins/plugin" -> {
+                            if (prefix != null && pluginArtifactId != null) {
+                                plugins.add(new Plugin(name, prefix, pluginArtifactId));
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Invalid maven-metadata.xml: " + e.getMessage(), e);
+        }
+        return new MavenMetadata(groupId, artifactId, versions, plugins, lastUpdated);
+    }
+
+    private static long parseLastUpdated(String text) {
+        try {
+            return Instant.from(LAST_UPDATED.parse(text)).toEpochMilli();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    byte[] toXml() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            XMLStreamWriter writer = outputFactory.createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("metadata");
+            if (!plugins.isEmpty()) {
+                writer.writeStartElement("plugins");
+                for (var plugin : plugins) {
+                    writer.writeStartElement("plugin");
+                    if (plugin.name() != null) {
+                        writeElement(writer, "name", plugin.name());
+                    }
+                    writeElement(writer, "prefix", plugin.prefix());
+                    writeElement(writer, "artifactId", plugin.artifactId());
+                    writer.writeEndElement();
+                }
+                writer.writeEndElement();
+            }
+            if (!versions.isEmpty()) {
+                writeElement(writer, "groupId", groupId);
+                writeElement(writer, "artifactId", artifactId);
+                writer.writeStartElement("versioning");
+                writeElement(writer, "latest", versions.getLast());
+                String release = null;
+                for (var version : versions) {
+                    if (!version.endsWith("-SNAPSHOT")) {
+                        release = version;
+                    }
+                }
+                if (release != null) {
+                    writeElement(writer, "release", release);
+                }
+                writer.writeStartElement("versions");
+                for (var version : versions) {
+                    writeElement(writer, "version", version);
+                }
+                writer.writeEndElement();
+                writeElement(writer, "lastUpdated", LAST_UPDATED.format(Instant.ofEpochMilli(lastUpdated)));
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String text) throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+    }
+}
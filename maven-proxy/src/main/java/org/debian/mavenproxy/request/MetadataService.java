@@ -0,0 +1,206 @@
+package org.debian.mavenproxy.request;
+
+import org.debian.mavenproxy.ArtifactParseUtil;
+import org.debian.mavenproxy.ConfigUtil;
+import org.debian.mavenproxy.repositories.ChecksumAlgorithm;
+import org.debian.mavenproxy.repositories.DebianRepository;
+import org.debian.mavenproxy.repositories.LocalRepository;
+import org.debian.mavenproxy.repositories.RemoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves maven-metadata.xml merged from the versions in the local repository, the Debian
+ * repository and the metadata of all remotes. Results are cached for the configured time
+ * to live, versions stored in the local repository are added to cached entries right away.
+ * Metadata of SNAPSHOT versions is passed through from the first remote that has it.
+ * The gzip encoding of every entry is kept with it, so it is compressed once per update.
+ */
+class MetadataService {
+    private static final Logger logger = LoggerFactory.getLogger(MetadataService.class);
+
+    private final LocalRepository localRepository;
+    private final DebianRepository debianRepository;
+    private final List<RemoteRepository> remoteRepositories;
+    private final long ttl;
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param metadata merged metadata, null for metadata passed through unchanged
+     */
+    private record Entry(MavenMetadata metadata, byte[] xml, byte[] compressed, long expires) {
+        Entry(MavenMetadata metadata, byte[] xml, long expires) {
+            this(metadata, xml, xml == null ? null : gzip(xml), expires);
+        }
+
+        Entry withVersion(String version) {
+            if (metadata == null || metadata.versions().contains(version)) {
+                return this;
+            }
+            MavenMetadata updated = metadata.withVersion(version, System.currentTimeMillis());
+            return new Entry(updated, updated.toXml(), expires);
+        }
+    }
+
+    /**
+     * @param compressed gzip encoding of the content, null if it is not served compressed
+     */
+    record Content(byte[] content, byte[] compressed) {
+    }
+
+    /**
+     * @param debianRepository Debian repository, may be null
+     */
+    MetadataService(LocalRepository localRepository, DebianRepository debianRepository, List<RemoteRepository> remoteRepositories, Map<String, Object> config) {
+        this.localRepository = localRepository;
+        this.debianRepository = debianRepository;
+        this.remoteRepositories = remoteRepositories;
+        this.ttl = TimeUnit.SECONDS.toMillis(ConfigUtil.getLong(config, "ttl-seconds", 600));
+        localRepository.addStoreListener(this::artifactStored);
+    }
+
+    /**
+     * @param requestPath path of maven-metadata.xml or one of its checksums
+     * @return content of the requested file
+     */
+    Content getFile(String requestPath) throws FileNotFoundException {
+        String path = requestPath.startsWith("/") ? requestPath.substring(1) : requestPath;
+        int fileLocation = path.lastIndexOf('/');
+        if (fileLocation <= 0) {
+            throw new FileNotFoundException(requestPath);
+        }
+        Entry entry = getEntry(path.substring(0, fileLocation));
+        ChecksumAlgorithm checksum = ChecksumAlgorithm.fromFileName(path.substring(fileLocation + 1));
+        if (checksum == null) {
+            return new Content(entry.xml(), entry.compressed());
+        }
+        return new Content(HexFormat.of().formatHex(checksum.newDigest().digest(entry.xml())).getBytes(StandardCharsets.US_ASCII), null);
+    }
+
+    /**
+     * @param directory directory of the metadata relative to the repository root, e.g. org/foo/bar
+     */
+    private Entry getEntry(String directory) throws FileNotFoundException {
+        CompletableFuture<Entry> created = new CompletableFuture<>();
+        CompletableFuture<Entry> future = cache.compute(directory, (k, existing) ->
+                existing != null && !isStale(existing) ? existing : created);
+        if (future == created) {
+            try {
+                created.complete(load(directory));
+            } catch (RuntimeException e) {
+                cache.remove(directory, created);
+                created.completeExceptionally(e);
+            }
+        }
+        Entry entry;
+        try {
+            entry = future.join();
+        } catch (CompletionException e) {
+            throw new FileNotFoundException(directory + ": " + e.getCause());
+        }
+        if (entry.xml() == null) {
+            throw new FileNotFoundException(directory + "/" + ArtifactParseUtil.METADATA_FILE);
+        }
+        return entry;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isStale(CompletableFuture<Entry> future) {
+        if (!future.isDone()) {
+            return false;
+        }
+        return future.isCompletedExceptionally() || future.join().expires() < System.currentTimeMillis();
+    }
+
+    private void artifactStored(String groupId, String artifactId, String version, String fileName) {
+        if (ChecksumAlgorithm.isChecksum(fileName)) {
+            return;
+        }
+        String directory = groupId.replace('.', '/') + "/" + artifactId;
+        cache.computeIfPresent(directory, (k, future) -> future.thenApply(entry -> entry.withVersion(version)));
+    }
+
+    private Entry load(String directory) {
+        long expires = System.currentTimeMillis() + ttl;
+        String relativePath = directory + "/" + ArtifactParseUtil.METADATA_FILE;
+        List<byte[]> upstream = fetchUpstream(relativePath);
+        int split = directory.lastIndexOf('/');
+        String artifactId = directory.substring(split + 1);
+        if (artifactId.endsWith("-SNAPSHOT")) {
+            return new Entry(null, upstream.isEmpty() ? null : upstream.getFirst(), expires);
+        }
+        String groupId = split > 0 ? directory.substring(0, split).replace('/', '.') : "";
+
+        ArrayList<MavenMetadata> sources = new ArrayList<>();
+        for (var data : upstream) {
+            try {
+                sources.add(MavenMetadata.parse(data));
+            } catch (IOException e) {
+                logger.warn("Ignoring {}: {}", relativePath, e.getMessage());
+            }
+        }
+        MavenMetadata remote = MavenMetadata.merge(groupId, artifactId, sources);
+        ArrayList<String> versions = new ArrayList<>(localRepository.getVersions(groupId, artifactId));
+        if (debianRepository != null) {
+            versions.addAll(debianRepository.getVersions(groupId, artifactId));
+        }
+        MavenMetadata merged = MavenMetadata.merge(groupId, artifactId,
+                List.of(remote, new MavenMetadata(groupId, artifactId, versions, List.of(), 0)));
+        if (merged.versions().size() > remote.versions().size()) {
+            merged = new MavenMetadata(groupId, artifactId, merged.versions(), merged.plugins(), System.currentTimeMillis());
+        }
+        return new Entry(merged, merged.isEmpty() ? null : merged.toXml(), expires);
+    }
+
+    /**
+     * Downloads the file from all remotes in parallel.
+     */
+    private List<byte[]> fetchUpstream(String relativePath) {
+        ArrayList<byte[]> result = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            ArrayList<Future<byte[]>> downloads = new ArrayList<>();
+            for (var remote : remoteRepositories) {
+                downloads.add(executor.submit(() -> remote.getRepositoryFile(relativePath)));
+            }
+            for (var download : downloads) {
+                try {
+                    result.add(download.get());
+                } catch (ExecutionException e) {
+                    // not available from this remote
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+}
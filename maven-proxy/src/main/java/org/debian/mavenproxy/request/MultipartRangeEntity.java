@@ -0,0 +1,137 @@
+package org.debian.mavenproxy.request;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * multipart/byteranges body of a 206 response with several ranges. Every part is
+ * copied from the cached file with {@link FileChannel#transferTo}, {@link #getContent()}
+ * reads the same body from a single channel.
+ */
+class MultipartRangeEntity extends AbstractHttpEntity {
+    private final Path path;
+    private final List<ByteRange> ranges;
+    private final List<byte[]> partHeaders = new ArrayList<>();
+    private final byte[] trailer;
+    private final long length;
+
+    MultipartRangeEntity(Path path, String contentType, List<ByteRange> ranges, long size) {
+        this.path = path;
+        this.ranges = ranges;
+        String boundary = "maven-proxy-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        long total = 0;
+        for (var range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: " + range.toContentRange(size) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            total += header.length + range.length();
+        }
+        this.trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        this.length = total + trailer.length;
+        setContentType("multipart/byteranges; boundary=" + boundary);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        List<InputStream> parts = new ArrayList<>(ranges.size() * 2 + 1);
+        for (int i = 0; i < ranges.size(); ++i) {
+            parts.add(new ByteArrayInputStream(partHeaders.get(i)));
+            parts.add(new SliceInputStream(channel, ranges.get(i).first(), ranges.get(i).length(), path));
+        }
+        parts.add(new ByteArrayInputStream(trailer));
+        return new SequenceInputStream(Collections.enumeration(parts)) {
+            @Override
+            public void close() throws IOException {
+                try (channel) {
+                    super.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Part of a file read with positional reads, the channel is shared by the parts and
+     * closed with the whole body.
+     */
+    private static class SliceInputStream extends InputStream {
+        private final FileChannel channel;
+        private final Path path;
+        private long position;
+        private final long end;
+
+        SliceInputStream(FileChannel channel, long offset, long length, Path path) {
+            this.channel = channel;
+            this.path = path;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (count < 0) {
+                throw new IOException("Unexpected end of file " + path + " at " + position + " of " + end);
+            }
+            position += count;
+            return count;
+        }
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(outStream);
+            for (int i = 0; i < ranges.size(); ++i) {
+                outStream.write(partHeaders.get(i));
+                FileChannelEntity.transfer(channel, ranges.get(i).first(), ranges.get(i).length(), target, path);
+            }
+            outStream.write(trailer);
+        }
+        outStream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,99 @@
+package org.debian.mavenproxy.request;
+
+import org.debian.mavenproxy.DbManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remembers remote urls that answered 404 so that repeated misses are answered
+ * without network I/O. Entries expire after the configured time to live and are
+ * persisted to the blacklist table to survive restarts.
+ * <p>
+ * The cache holds at most {@code maxEntries} urls. When a miss is added beyond that, expired
+ * entries are swept and, if that is not enough, the entries expiring first are evicted.
+ */
+class NegativeCache {
+    static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private final ConcurrentHashMap<String, Long> misses = new ConcurrentHashMap<>();
+    private final DbManager dbManager;
+    private final long ttl;
+    private final int maxEntries;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    NegativeCache(DbManager dbManager, long ttl) {
+        this(dbManager, ttl, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param dbManager database storing the entries, may be null
+     * @param ttl time to live of an entry in milliseconds, 0 disables the cache
+     * @param maxEntries number of urls kept in memory
+     */
+    NegativeCache(DbManager dbManager, long ttl, int maxEntries) {
+        this.dbManager = dbManager;
+        this.ttl = ttl;
+        this.maxEntries = Math.max(1, maxEntries);
+        if (dbManager != null && ttl > 0) {
+            misses.putAll(dbManager.loadBlacklist());
+            sweep();
+        }
+    }
+
+    boolean isMissing(String url) {
+        Long expires = misses.get(url);
+        if (expires == null) {
+            return false;
+        }
+        if (expires > System.currentTimeMillis()) {
+            return true;
+        }
+        misses.remove(url, expires);
+        return false;
+    }
+
+    void addMiss(String url) {
+        if (ttl <= 0) {
+            return;
+        }
+        long expires = System.currentTimeMillis() + ttl;
+        misses.put(url, expires);
+        if (misses.size() > maxEntries) {
+            sweep();
+        }
+        if (dbManager != null) {
+            dbManager.blacklist(url, expires);
+        }
+    }
+
+    /**
+     * Removes the expired entries, then the entries expiring first until a quarter of the
+     * capacity is free again, so that the next sweep is not due on the next miss.
+     */
+    private void sweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            misses.values().removeIf(expires -> expires <= now);
+            int excess = misses.size() - maxEntries * 3 / 4;
+            if (misses.size() <= maxEntries || excess <= 0) {
+                return;
+            }
+            misses.entrySet().stream()
+                    .sorted(Map.Entry.comparingByValue())
+                    .limit(excess)
+                    .toList()
+                    .forEach(e -> misses.remove(e.getKey(), e.getValue()));
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    int size() {
+        return misses.size();
+    }
+}
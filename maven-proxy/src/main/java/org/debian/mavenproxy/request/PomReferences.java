@@ -0,0 +1,170 @@
+package org.debian.mavenproxy.request;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * POMs referenced by a POM: its parent, its dependencies and the BOMs it imports.
+ * Only what the POM itself declares is read. Versions using properties are interpolated
+ * from the POM's own properties, references whose version is inherited, managed elsewhere
+ * or a range are left out.
+ */
+record PomReferences(Reference parent, List<Reference> dependencies, List<Reference> imports) {
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newFactory();
+    private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)}");
+
+    static {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * @param scope scope of a dependency, null for parents and imports
+     */
+    record Reference(String groupId, String artifactId, String version, String type, String scope, boolean optional) {
+    }
+
+    private static class Declaration {
+        String groupId;
+        String artifactId;
+        String version;
+        String type = "jar";
+        String scope = "compile";
+        boolean optional;
+    }
+
+    static PomReferences parse(InputStream is) throws IOException {
+        HashMap<String, String> properties = new HashMap<>();
+        Declaration project = new Declaration();
+        Declaration parent = null;
+        Declaration dependency = null;
+        ArrayList<Declaration> dependencies = new ArrayList<>();
+        ArrayList<Declaration> managed = new ArrayList<>();
+        ArrayList<String> path = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        try {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(is);
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    path.add(reader.getLocalName());
+                    text.setLength(0);
+                    String location = String.join("/", path);
+                    if (location.equals("project/parent")) {
+                        parent = new Declaration();
+                    } else if (location.equals("project/dependencies/dependency")) {
+                        dependency = new Declaration();
+                        dependencies.add(dependency);
+                    } else if (location.equals("project/dependencyManagement/dependencies/dependency")) {
+                        dependency = new Declaration();
+                        managed.add(dependency);
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String value = text.toString().trim();
+                    text.setLength(0);
+                    String location = String.join("/", path);
+                    String element = path.removeLast();
+                    if (location.startsWith("project/properties/") && path.size() == 2) {
+                        properties.put(element, value);
+                    } else if (location.startsWith("project/parent/") && path.size() == 2) {
+                        set(parent, element, value);
+                    } else if (path.size() == 1) {
+                        set(project, element, value);
+                    } else if (dependency != null && (location.startsWith("project/dependencies/dependency/") && path.size() == 3
+                            || location.startsWith("project/dependencyManagement/dependencies/dependency/") && path.size() == 4)) {
+                        set(dependency, element, value);
+                    }
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Invalid POM: " + e.getMessage(), e);
+        }
+
+        if (parent != null) {
+            properties.put("project.parent.groupId", parent.groupId);
+            properties.put("project.parent.version", parent.version);
+        }
+        String groupId = project.groupId != null ? project.groupId : parent != null ? parent.groupId : null;
+        String version = project.version != null ? project.version : parent != null ? parent.version : null;
+        for (var prefix : List.of("project.", "pom.", "")) {
+            properties.put(prefix + "groupId", groupId);
+            properties.put(prefix + "version", version);
+        }
+
+        ArrayList<Reference> references = new ArrayList<>();
+        for (var declaration : dependencies) {
+            Reference reference = resolve(declaration, properties, declaration.scope);
+            if (reference != null) {
+                references.add(reference);
+            }
+        }
+        ArrayList<Reference> imports = new ArrayList<>();
+        for (var declaration : managed) {
+            Reference reference = resolve(declaration, properties, null);
+            if (reference != null && "import".equals(declaration.scope) && "pom".equals(reference.type())) {
+                imports.add(reference);
+            }
+        }
+        return new PomReferences(parent == null ? null : resolve(parent, properties, null), references, imports);
+    }
+
+    private static void set(Declaration declaration, String element, String value) {
+        switch (element) {
+            case "groupId" -> declaration.groupId = value;
+            case "artifactId" -> declaration.artifactId = value;
+            case "version" -> declaration.version = value;
+            case "type" -> declaration.type = value;
+            case "scope" -> declaration.scope = value;
+            case "optional" -> declaration.optional = Boolean.parseBoolean(value);
+            default -> {
+            }
+        }
+    }
+
+    private static Reference resolve(Declaration declaration, HashMap<String, String> properties, String scope) {
+        String groupId = interpolate(declaration.groupId, properties);
+        String artifactId = interpolate(declaration.artifactId, properties);
+        String version = interpolate(declaration.version, properties);
+        if (groupId == null || artifactId == null || version == null
+                || version.startsWith("[") || version.startsWith("(")) {
+            return null;
+        }
+        return new Reference(groupId, artifactId, version, interpolate(declaration.type, properties), scope, declaration.optional);
+    }
+
+    /**
+     * @return value with its properties replaced, null if a property is undefined
+     */
+    private static String interpolate(String value, HashMap<String, String> properties) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        // properties referring to other properties are expanded a few levels deep
+        for (int i = 0; i < 5 && value.contains("${"); ++i) {
+            Matcher matcher = PROPERTY.matcher(value);
+            StringBuilder result = new StringBuilder();
+            while (matcher.find()) {
+                String property = properties.get(matcher.group(1));
+                if (property == null) {
+                    return null;
+                }
+                matcher.appendReplacement(result, Matcher.quoteReplacement(property));
+            }
+            matcher.appendTail(result);
+            value = result.toString();
+        }
+        return value.contains("${") ? null : value;
+    }
+}
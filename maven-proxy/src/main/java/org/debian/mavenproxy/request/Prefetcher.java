@@ -0,0 +1,183 @@
+package org.debian.mavenproxy.request;
+
+import org.debian.mavenproxy.Artifact;
+import org.debian.mavenproxy.ConfigUtil;
+import org.debian.mavenproxy.repositories.LocalRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fetches the POMs a served POM refers to (parent, dependencies and imported BOMs) into the
+ * local repository while the client is still parsing it, so that the next level of the
+ * dependency graph is a cache hit instead of an upstream round trip.
+ * <p>
+ * Prefetches run on a bounded pool and are dropped when its queue is full. POMs are followed
+ * up to {@code depth} levels from the served POM, dependencies are only followed for the
+ * configured scopes, optional dependencies are skipped. Requests served from files the
+ * prefetch stored are counted as hits.
+ */
+class Prefetcher {
+    private static final Logger logger = LoggerFactory.getLogger(Prefetcher.class);
+
+    /**
+     * Stores a file in the local repository unless it is already present.
+     */
+    interface Fetcher {
+        Path fetch(Artifact artifact, String fileName) throws IOException;
+    }
+
+    private final LocalRepository localRepository;
+    private final Fetcher fetcher;
+    private final boolean enabled;
+    private final int depth;
+    private final Set<String> scopes;
+    private final boolean jars;
+    private final ThreadPoolExecutor executor;
+    // files are scheduled once, a POM referenced by many others is only fetched and parsed once
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+    private final Set<String> expanded = ConcurrentHashMap.newKeySet();
+    // files stored by the prefetch and not requested by a client yet
+    private final Set<String> prefetched = ConcurrentHashMap.newKeySet();
+    private final LongAdder fetched = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    Prefetcher(LocalRepository localRepository, Fetcher fetcher, Map<String, Object> config) {
+        this.localRepository = localRepository;
+        this.fetcher = fetcher;
+        this.enabled = ConfigUtil.getBoolean(config, "enabled", false);
+        this.depth = Math.max(1, ConfigUtil.getInt(config, "depth", 1));
+        this.scopes = Set.copyOf(ConfigUtil.getStringList(config, "scopes", List.of("compile", "runtime")));
+        this.jars = ConfigUtil.getBoolean(config, "jars", false);
+        int threads = Math.max(1, ConfigUtil.getInt(config, "threads", 4));
+        this.executor = enabled ? new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, ConfigUtil.getInt(config, "queue-size", 1024))),
+                Thread.ofVirtual().name("prefetch-", 0).factory()) : null;
+        if (executor != null) {
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Called for every file a client is served from the local repository.
+     * Prefetches the POMs referenced by served POMs.
+     */
+    void served(Artifact artifact, String fileName) {
+        if (!enabled) {
+            return;
+        }
+        if (prefetched.remove(key(artifact, fileName))) {
+            hits.increment();
+        }
+        if (fileName.endsWith(".pom") && !expanded.contains(key(artifact, fileName))) {
+            submit(artifact, fileName, 0);
+        }
+    }
+
+    private void submit(Artifact artifact, String fileName, int level) {
+        String key = key(artifact, fileName);
+        if (level > 0 && !scheduled.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> prefetch(artifact, fileName, level));
+        } catch (RejectedExecutionException e) {
+            scheduled.remove(key);
+            dropped.increment();
+        }
+    }
+
+    private void prefetch(Artifact artifact, String fileName, int level) {
+        try {
+            Path path;
+            try {
+                path = localRepository.getArtifact(artifact.groupId(), artifact.name(), artifact.version(), fileName).getPath();
+            } catch (FileNotFoundException e) {
+                String key = key(artifact, fileName);
+                prefetched.add(key);
+                try {
+                    path = fetcher.fetch(artifact, fileName);
+                } catch (IOException | RuntimeException ex) {
+                    prefetched.remove(key);
+                    throw ex;
+                }
+                fetched.increment();
+            }
+            if (level < depth && fileName.endsWith(".pom") && expanded.add(key(artifact, fileName))) {
+                PomReferences references;
+                try (InputStream is = Files.newInputStream(path)) {
+                    references = PomReferences.parse(is);
+                }
+                schedule(references, level + 1);
+            }
+        } catch (FileNotFoundException e) {
+            logger.debug("Not prefetched {}: {}", fileName, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Prefetch of {} failed: {}", fileName, e.getMessage());
+        }
+    }
+
+    private void schedule(PomReferences references, int level) {
+        if (references.parent() != null) {
+            submitPom(references.parent(), level);
+        }
+        for (var bom : references.imports()) {
+            submitPom(bom, level);
+        }
+        for (var dependency : references.dependencies()) {
+            if (dependency.optional() || !scopes.contains(dependency.scope())) {
+                continue;
+            }
+            submitPom(dependency, level);
+            if (jars && "jar".equals(dependency.type())) {
+                Artifact artifact = new Artifact(dependency.groupId(), dependency.artifactId(), dependency.version(), "jar");
+                submit(artifact, dependency.artifactId() + "-" + dependency.version() + ".jar", level);
+            }
+        }
+    }
+
+    private void submitPom(PomReferences.Reference reference, int level) {
+        Artifact artifact = new Artifact(reference.groupId(), reference.artifactId(), reference.version(), "pom");
+        submit(artifact, reference.artifactId() + "-" + reference.version() + ".pom", level);
+    }
+
+    private static String key(Artifact artifact, String fileName) {
+        return artifact.groupId() + ":" + artifact.name() + ":" + artifact.version() + "/" + fileName;
+    }
+
+    /**
+     * @return number of files stored by the prefetch
+     */
+    long getFetched() {
+        return fetched.sum();
+    }
+
+    /**
+     * @return number of client requests served from files stored by the prefetch
+     */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of prefetches dropped because the queue was full
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,245 @@
+package org.debian.mavenproxy.request;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the requests served by the proxy, rendered in the
+ * Prometheus text format.
+ * <p>
+ * Requests are counted per method, per tier that answered them and per outcome. The tiers are
+ * the local repository, the Debian repository, every remote repository, content generated by
+ * the proxy (metadata and checksums) and none for requests that were not found. All series
+ * are allocated up front and indexed by small integers, recording a request only increments
+ * {@link LongAdder}s. Latencies are measured until the response is ready to be written, the
+ * body of a pending download is streamed afterwards.
+ */
+public class ProxyMetrics {
+    static final int GET = 0;
+    static final int HEAD = 1;
+    private static final String[] METHODS = {"GET", "HEAD"};
+
+    static final int LOCAL = 0;
+    static final int DEBIAN = 1;
+    static final int GENERATED = 2;
+    static final int NONE = 3;
+    private static final int REMOTE = 4;
+
+    static final int OK = 0;
+    static final int NOT_MODIFIED = 1;
+    static final int NOT_FOUND = 2;
+    static final int ERROR = 3;
+    private static final String[] OUTCOMES = {"ok", "not_modified", "not_found", "error"};
+
+    // upper bounds of the latency buckets in seconds, as rendered in the le label
+    private static final String[] BUCKETS = {"0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"};
+
+    // label sets of the tiers, remote tiers also carry the repository url
+    private final String[] tiers;
+    private final String[] tierNames;
+    // [method][tier][outcome]
+    private final LongAdder[] requests;
+    // [method][tier]
+    private final Histogram[] durations;
+    private final LongAdder[] responseBytes;
+    private final LongAdder[] upstreamBytes;
+    // [tier][stored, failed]
+    private final LongAdder[] fills;
+    private final Prefetcher prefetcher;
+
+    /**
+     * Fixed bucket histogram, the bucket counts are not cumulative until rendered.
+     */
+    private static final class Histogram {
+        private static final long[] BOUNDS = new long[BUCKETS.length];
+
+        static {
+            for (int i = 0; i < BUCKETS.length; ++i) {
+                BOUNDS[i] = (long) (Double.parseDouble(BUCKETS[i]) * TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+
+        // the last bucket counts the observations above the highest bound
+        final LongAdder[] counts = newAdders(BOUNDS.length + 1);
+        final LongAdder sum = new LongAdder();
+
+        void record(long nanos) {
+            int bucket = 0;
+            while (bucket < BOUNDS.length && nanos > BOUNDS[bucket]) {
+                ++bucket;
+            }
+            counts[bucket].increment();
+            sum.add(nanos);
+        }
+    }
+
+    ProxyMetrics(List<String> remotes, Prefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+        tiers = new String[REMOTE + remotes.size()];
+        tiers[LOCAL] = "tier=\"local\"";
+        tiers[DEBIAN] = "tier=\"debian\"";
+        tiers[GENERATED] = "tier=\"generated\"";
+        tiers[NONE] = "tier=\"none\"";
+        tierNames = new String[tiers.length];
+        tierNames[LOCAL] = "local";
+        tierNames[DEBIAN] = "debian";
+        tierNames[GENERATED] = "generated";
+        tierNames[NONE] = "none";
+        for (int i = 0; i < remotes.size(); ++i) {
+            tiers[REMOTE + i] = "tier=\"remote\",remote=\"" + escape(remotes.get(i)) + "\"";
+            tierNames[REMOTE + i] = remotes.get(i);
+        }
+        requests = newAdders(METHODS.length * tiers.length * OUTCOMES.length);
+        durations = new Histogram[METHODS.length * tiers.length];
+        for (int i = 0; i < durations.length; ++i) {
+            durations[i] = new Histogram();
+        }
+        responseBytes = newAdders(tiers.length);
+        upstreamBytes = newAdders(tiers.length);
+        fills = newAdders(tiers.length * 2);
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; ++i) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * @return tier of the remote repository with the given index in the configuration
+     */
+    static int remote(int index) {
+        return REMOTE + index;
+    }
+
+    /**
+     * @return name of the tier, the url for remote repositories
+     */
+    String getTierName(int tier) {
+        return tierNames[tier];
+    }
+
+    static int outcome(int statusCode) {
+        if (statusCode >= 200 && statusCode < 300) {
+            return OK;
+        }
+        return switch (statusCode) {
+            case 304 -> NOT_MODIFIED;
+            case 404 -> NOT_FOUND;
+            default -> ERROR;
+        };
+    }
+
+    /**
+     * @param bytes length of the response body, -1 if unknown
+     */
+    void recordRequest(int method, int tier, int outcome, long nanos, long bytes) {
+        requests[(method * tiers.length + tier) * OUTCOMES.length + outcome].increment();
+        durations[method * tiers.length + tier].record(nanos);
+        if (method == GET && bytes > 0) {
+            responseBytes[tier].add(bytes);
+        }
+    }
+
+    /**
+     * Records a download from an upstream tier into the local repository.
+     */
+    void recordFill(int tier, boolean stored, long bytes) {
+        fills[tier * 2 + (stored ? 0 : 1)].increment();
+        upstreamBytes[tier].add(bytes);
+    }
+
+    /**
+     * Renders the metrics in the Prometheus text exposition format.
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        header(out, "maven_proxy_requests_total", "counter", "Requests by method, tier serving them and outcome.");
+        for (int method = 0; method < METHODS.length; ++method) {
+            for (int tier = 0; tier < tiers.length; ++tier) {
+                for (int outcome = 0; outcome < OUTCOMES.length; ++outcome) {
+                    long count = requests[(method * tiers.length + tier) * OUTCOMES.length + outcome].sum();
+                    if (count > 0) {
+                        out.append("maven_proxy_requests_total{method=\"").append(METHODS[method]).append("\",")
+                                .append(tiers[tier]).append(",outcome=\"").append(OUTCOMES[outcome]).append("\"} ")
+                                .append(count).append('\n');
+                    }
+                }
+            }
+        }
+
+        header(out, "maven_proxy_request_duration_seconds", "histogram", "Time until the response is ready to be written.");
+        for (int method = 0; method < METHODS.length; ++method) {
+            for (int tier = 0; tier < tiers.length; ++tier) {
+                writeHistogram(out, "maven_proxy_request_duration_seconds",
+                        "method=\"" + METHODS[method] + "\"," + tiers[tier], durations[method * tiers.length + tier]);
+            }
+        }
+
+        header(out, "maven_proxy_response_bytes_total", "counter", "Bytes of GET response bodies of known length by tier.");
+        writeCounters(out, "maven_proxy_response_bytes_total", responseBytes);
+        header(out, "maven_proxy_upstream_bytes_total", "counter", "Bytes downloaded into the local repository by tier.");
+        writeCounters(out, "maven_proxy_upstream_bytes_total", upstreamBytes);
+        header(out, "maven_proxy_cache_fills_total", "counter", "Downloads into the local repository by tier and result.");
+        for (int tier = 0; tier < tiers.length; ++tier) {
+            writeCounter(out, "maven_proxy_cache_fills_total", tiers[tier] + ",result=\"stored\"", fills[tier * 2].sum());
+            writeCounter(out, "maven_proxy_cache_fills_total", tiers[tier] + ",result=\"failed\"", fills[tier * 2 + 1].sum());
+        }
+
+        if (prefetcher != null) {
+            header(out, "maven_proxy_prefetch_fetched_total", "counter", "Files stored by the prefetch.");
+            out.append("maven_proxy_prefetch_fetched_total ").append(prefetcher.getFetched()).append('\n');
+            header(out, "maven_proxy_prefetch_hits_total", "counter", "Requests served from files stored by the prefetch.");
+            out.append("maven_proxy_prefetch_hits_total ").append(prefetcher.getHits()).append('\n');
+            header(out, "maven_proxy_prefetch_dropped_total", "counter", "Prefetches dropped because the queue was full.");
+            out.append("maven_proxy_prefetch_dropped_total ").append(prefetcher.getDropped()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private void writeCounters(StringBuilder out, String name, LongAdder[] counters) {
+        for (int tier = 0; tier < tiers.length; ++tier) {
+            writeCounter(out, name, tiers[tier], counters[tier].sum());
+        }
+    }
+
+    private static void writeCounter(StringBuilder out, String name, String labels, long value) {
+        if (value > 0) {
+            out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+        }
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        long[] counts = new long[histogram.counts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = histogram.counts[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return;
+        }
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS.length; ++i) {
+            cumulative += counts[i];
+            out.append(name).append("_bucket{").append(labels).append(",le=\"").append(BUCKETS[i]).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(total).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ")
+                .append(histogram.sum.sum() / (double) TimeUnit.SECONDS.toNanos(1)).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(total).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,204 @@
+package org.debian.mavenproxy.request;
+
+import org.debian.mavenproxy.Artifact;
+import org.debian.mavenproxy.ConfigUtil;
+import org.debian.mavenproxy.repositories.ArtifactMetadata;
+import org.debian.mavenproxy.repositories.MissingArtifactException;
+import org.debian.mavenproxy.repositories.RemoteRepository;
+import org.debian.mavenproxy.repositories.RepositoryContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Finds the remote repository serving an artifact.
+ * With a parallelism of 1 the remotes are tried one after another in configuration order.
+ * Otherwise the remotes are probed with HEAD requests, up to {@code parallelism} at a time.
+ * A lower priority remote is probed once the higher priority probes have been pending for
+ * {@code hedge-delay-ms}. The highest priority remote that did not answer that the artifact
+ * is missing wins, the remaining probes are cancelled and the artifact is fetched from the
+ * winner. A remote whose probe failed, e.g. because it rejects HEAD, is tried with a GET like
+ * in the sequential lookup.
+ * Remotes known to miss the artifact from the {@link NegativeCache} are skipped, the remote
+ * the {@link GroupRouter} learned for the groupId is tried first.
+ */
+class RemoteLookup {
+    private static final Logger logger = LoggerFactory.getLogger(RemoteLookup.class);
+
+    private static final int PENDING = 0;
+    private static final int FOUND = 1;
+    private static final int MISSING = 2;
+    // the probe failed, only a GET tells whether the remote has the artifact
+    private static final int UNKNOWN = 3;
+
+    private final GroupRouter groupRouter;
+    private final NegativeCache negativeCache;
+    private final int parallelism;
+    private final long hedgeDelay;
+    private final ExecutorService executor;
+
+    /**
+     * @param repository remote repository serving the content
+     */
+    record Found(RemoteRepository repository, RepositoryContent content) {
+    }
+
+    RemoteLookup(GroupRouter groupRouter, NegativeCache negativeCache, Map<String, Object> config) {
+        this.groupRouter = groupRouter;
+        this.negativeCache = negativeCache;
+        this.parallelism = Math.max(1, ConfigUtil.getInt(config, "parallelism", 1));
+        this.hedgeDelay = Math.max(0, ConfigUtil.getLong(config, "hedge-delay-ms", 0));
+        this.executor = parallelism > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    /**
+     * @param repository remote repository that answered the probe
+     */
+    record Probed(RemoteRepository repository, ArtifactMetadata metadata) {
+    }
+
+    Found fetch(Artifact requestedArt, String fileName) throws FileNotFoundException {
+        List<RemoteRepository> candidates = candidates(requestedArt, fileName);
+        int first = 0;
+        if (parallelism > 1 && candidates.size() > 1) {
+            first = probe(candidates, requestedArt, fileName);
+        }
+        for (int i = first; i < candidates.size(); ++i) {
+            RemoteRepository repository = candidates.get(i);
+            try {
+                RepositoryContent content = repository.getArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName);
+                groupRouter.recordFetch(requestedArt, fileName, repository);
+                return new Found(repository, content);
+            } catch (MissingArtifactException e) {
+                negativeCache.addMiss(getUrl(repository, requestedArt, fileName));
+            } catch (FileNotFoundException e) {
+                // ignore
+            }
+        }
+        throw new FileNotFoundException(fileName);
+    }
+
+    /**
+     * Asks the remotes for the size and modification time of the artifact with HEAD requests,
+     * in the order the artifact would be fetched.
+     *
+     * @return attributes from the first remote having the artifact, null if a remote that could
+     *         not be probed or did not tell the size may have it and only a GET can answer
+     * @throws FileNotFoundException if every remote answered that it does not have the artifact
+     */
+    Probed metadata(Artifact requestedArt, String fileName) throws FileNotFoundException {
+        for (var repository : candidates(requestedArt, fileName)) {
+            try {
+                ArtifactMetadata metadata = repository
+                        .probe(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName).execute();
+                return metadata.size() >= 0 ? new Probed(repository, metadata) : null;
+            } catch (MissingArtifactException e) {
+                negativeCache.addMiss(getUrl(repository, requestedArt, fileName));
+            } catch (IOException e) {
+                logger.debug("Probe of {} failed, trying GET", getUrl(repository, requestedArt, fileName));
+                return null;
+            }
+        }
+        throw new FileNotFoundException(fileName);
+    }
+
+    /**
+     * @return remotes in lookup order, without those known to miss the artifact
+     */
+    private List<RemoteRepository> candidates(Artifact requestedArt, String fileName) {
+        List<RemoteRepository> remoteRepositories = groupRouter.order(requestedArt.groupId());
+        List<RemoteRepository> candidates = new ArrayList<>(remoteRepositories.size());
+        for (var repository : remoteRepositories) {
+            if (!negativeCache.isMissing(getUrl(repository, requestedArt, fileName))) {
+                candidates.add(repository);
+            }
+        }
+        return candidates;
+    }
+
+    private static String getUrl(RemoteRepository repository, Artifact requestedArt, String fileName) {
+        return repository.getArtifactUrl(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName);
+    }
+
+    /**
+     * @return index of the highest priority candidate that has the artifact or could not be probed
+     */
+    private int probe(List<RemoteRepository> candidates, Artifact requestedArt, String fileName) throws FileNotFoundException {
+        int count = candidates.size();
+        RemoteRepository.Probe[] probes = new RemoteRepository.Probe[count];
+        AtomicIntegerArray results = new AtomicIntegerArray(count);
+        LinkedBlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+        int launched = 0;
+        int running = 0;
+        int next = 0;
+        long lastLaunch = 0;
+        try {
+            while (next < count) {
+                // the highest priority undecided remote is always probed, others only after the hedge delay
+                while (launched < count && running < parallelism
+                        && (launched == next || System.nanoTime() - lastLaunch >= TimeUnit.MILLISECONDS.toNanos(hedgeDelay))) {
+                    int index = launched++;
+                    RemoteRepository repository = candidates.get(index);
+                    RemoteRepository.Probe probe = repository
+                            .probe(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName);
+                    probes[index] = probe;
+                    executor.execute(() -> {
+                        try {
+                            probe.execute();
+                            results.set(index, FOUND);
+                        } catch (MissingArtifactException e) {
+                            negativeCache.addMiss(getUrl(repository, requestedArt, fileName));
+                            results.set(index, MISSING);
+                        } catch (IOException | RuntimeException e) {
+                            results.set(index, UNKNOWN);
+                        }
+                        completed.add(index);
+                    });
+                    lastLaunch = System.nanoTime();
+                    running++;
+                }
+
+                Integer done;
+                if (launched < count && running < parallelism) {
+                    long waitNanos = TimeUnit.MILLISECONDS.toNanos(hedgeDelay) - (System.nanoTime() - lastLaunch);
+                    done = completed.poll(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+                } else {
+                    done = completed.take();
+                }
+                if (done != null) {
+                    running--;
+                }
+                while (next < launched && results.get(next) != PENDING) {
+                    if (results.get(next) == FOUND) {
+                        logger.debug("{} found at {}", fileName, getUrl(candidates.get(next), requestedArt, fileName));
+                        return next;
+                    }
+                    if (results.get(next) == UNKNOWN) {
+                        logger.debug("Probe of {} failed, trying GET", getUrl(candidates.get(next), requestedArt, fileName));
+                        return next;
+                    }
+                    next++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (int i = 0; i < launched; ++i) {
+                if (results.get(i) == PENDING) {
+                    probes[i].cancel();
+                }
+            }
+        }
+        throw new FileNotFoundException(fileName);
+    }
+}
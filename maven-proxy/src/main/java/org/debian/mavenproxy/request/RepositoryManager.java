@@ -1,21 +1,37 @@
 package org.debian.mavenproxy.request;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.debian.mavenproxy.Artifact;
 import org.debian.mavenproxy.ArtifactParseUtil;
+import org.debian.mavenproxy.ConfigUtil;
+import org.debian.mavenproxy.DbManager;
+import org.debian.mavenproxy.repositories.ArtifactMetadata;
+import org.debian.mavenproxy.repositories.ChecksumAlgorithm;
 import org.debian.mavenproxy.repositories.DebianRepository;
 import org.debian.mavenproxy.repositories.LocalRepository;
 import org.debian.mavenproxy.repositories.RemoteRepository;
 import org.debian.mavenproxy.repositories.RepositoryContent;
+import org.debian.mavenproxy.repositories.UpstreamHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class RepositoryManager {
     private static final Logger logger = LoggerFactory.getLogger(RepositoryManager.class);
@@ -23,80 +39,268 @@ public class RepositoryManager {
     private final LocalRepository localRepository;
     private final DebianRepository debianRepository;
     private final List<RemoteRepository> remoteRepositories;
+    private final RemoteLookup remoteLookup;
+    private final ChecksumIndex checksumIndex;
+    private final MetadataService metadataService;
+    private final Prefetcher prefetcher;
+    private final ArtifactManifest manifest;
+    private final ProxyMetrics metrics;
+    private final FetchProfiler profiler;
+    private final int warmUpParallelism;
+    private final SingleFlight inFlight = new SingleFlight();
 
-    public RepositoryManager(String localrepo, String debianRepo, List<String> remotes, List<String> ignoreRules, List<String> replaceRules) {
-        localRepository = new LocalRepository(localrepo);
+    public RepositoryManager(String localrepo, String debianRepo, List<String> remotes, List<String> ignoreRules, List<String> replaceRules, Map<String, Object> config, DbManager dbManager) {
+        localRepository = new LocalRepository(localrepo,
+                ChecksumAlgorithm.parse(ConfigUtil.getStringList(config, "checksums", List.of("sha1"))));
         if (debianRepo != null) {
-            debianRepository = new DebianRepository(debianRepo, ignoreRules, replaceRules);
+            debianRepository = new DebianRepository(debianRepo, ignoreRules, replaceRules, dbManager);
         } else {
             debianRepository = null;
         }
 
+        CloseableHttpClient httpClient = UpstreamHttpClient.create(ConfigUtil.getNode(config, "http-client"));
         remoteRepositories = new ArrayList<>();
         for (var remote : remotes) {
-            remoteRepositories.add(new RemoteRepository(remote));
+            remoteRepositories.add(new RemoteRepository(remote, httpClient));
         }
+        Map<String, Object> negativeCacheConfig = ConfigUtil.getNode(config, "negative-cache");
+        NegativeCache negativeCache = new NegativeCache(dbManager,
+                TimeUnit.SECONDS.toMillis(ConfigUtil.getLong(negativeCacheConfig, "ttl-seconds", 0)),
+                ConfigUtil.getInt(negativeCacheConfig, "max-entries", NegativeCache.DEFAULT_MAX_ENTRIES));
+        GroupRouter groupRouter = new GroupRouter(remoteRepositories, dbManager);
+        remoteLookup = new RemoteLookup(groupRouter, negativeCache, ConfigUtil.getNode(config, "remote-lookup"));
+        checksumIndex = new ChecksumIndex(dbManager);
+        metadataService = new MetadataService(localRepository, debianRepository, remoteRepositories, ConfigUtil.getNode(config, "metadata"));
+        prefetcher = new Prefetcher(localRepository, this::resolveLocal, ConfigUtil.getNode(config, "prefetch"));
+        metrics = new ProxyMetrics(remotes, prefetcher);
+        profiler = new FetchProfiler(metrics, ConfigUtil.getNode(config, "profiler"));
+        Map<String, Object> manifestConfig = ConfigUtil.getNode(config, "manifest");
+        manifest = dbManager != null && ConfigUtil.getBoolean(manifestConfig, "enabled", false) ? new ArtifactManifest(dbManager) : null;
+        warmUpParallelism = Math.max(1, ConfigUtil.getInt(manifestConfig, "parallelism", 16));
     }
 
     public void handleRequest(String relativePath, HttpResponse response, IRepositoryResponse action) {
+        handleRequest(relativePath, ConditionalRequest.NONE, response, action);
+    }
+
+    public void handleRequest(String relativePath, ConditionalRequest conditions, HttpResponse response, IRepositoryResponse action) {
+        long start = System.nanoTime();
+        FetchProfiler.Trace trace = profiler.begin(relativePath);
+        int tier = ProxyMetrics.NONE;
+        int outcome = ProxyMetrics.ERROR;
+        boolean served = false;
+        try {
+            tier = serve(relativePath, conditions, response, action, trace);
+            outcome = ProxyMetrics.outcome(response.getStatusLine().getStatusCode());
+            served = true;
+        } finally {
+            HttpEntity entity = response.getEntity();
+            long bytes = entity != null ? entity.getContentLength() : -1;
+            boolean head = action instanceof HeadRepositoryResponse;
+            metrics.recordRequest(head ? ProxyMetrics.HEAD : ProxyMetrics.GET, tier, outcome, System.nanoTime() - start, bytes);
+            // the body is written after this method returned, pending downloads only as they proceed
+            if (served && entity != null && !head && outcome != ProxyMetrics.NOT_MODIFIED) {
+                response.setEntity(profiler.endAfterBody(trace, tier, bytes, entity));
+            } else {
+                profiler.end(trace, tier, bytes);
+            }
+        }
+    }
+
+    /**
+     * @return metrics tier that served the request
+     */
+    private int serve(String relativePath, ConditionalRequest conditions, HttpResponse response, IRepositoryResponse action, FetchProfiler.Trace trace) {
         String fileName = relativePath.substring(relativePath.lastIndexOf('/') + 1);
+        if (ArtifactParseUtil.isMetadata(relativePath)) {
+            return handleMetadataRequest(relativePath, conditions, response, action, fileName);
+        }
         Artifact requestedArt = ArtifactParseUtil.parse(relativePath);
 
-        if (checkLocalRepository(response, action, requestedArt, fileName)) {
-            return;
+        if (checkLocalRepository(response, action, requestedArt, fileName, conditions)) {
+            prefetcher.served(requestedArt, fileName);
+            recordServed(relativePath, fileName, ArtifactManifest.LOCAL);
+            return ProxyMetrics.LOCAL;
+        }
+
+        ChecksumAlgorithm checksum = ChecksumAlgorithm.fromFileName(fileName);
+        if (checksum != null) {
+            return handleChecksumRequest(conditions, response, action, requestedArt, fileName, checksum);
+        }
+
+        // HEAD is answered from the attributes reported by the tier, the artifact is not downloaded
+        if (action instanceof HeadRepositoryResponse head) {
+            try {
+                UpstreamMetadata found = upstreamMetadata(requestedArt, fileName);
+                if (found != null) {
+                    head.writeMetadataResponse(response, fileName, found.metadata(), conditions);
+                    return found.source();
+                }
+            } catch (FileNotFoundException e) {
+                response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+                return ProxyMetrics.NONE;
+            }
+        }
+
+        // concurrent requests for the same missing file share one fetch and are served from the local repository
+        SingleFlight.Flight flight = inFlight.begin(flightKey(requestedArt, fileName));
+        if (!flight.isLeader()) {
+            if (flight.await() && checkLocalRepository(response, action, requestedArt, fileName, conditions)) {
+                return ProxyMetrics.LOCAL;
+            }
+            response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+            return ProxyMetrics.NONE;
         }
-        if (checkDebianRepository(response, action, requestedArt, fileName))  {
-            return;
+        // a fetch that completed between the local check and begin() already stored the file
+        if (checkLocalRepository(response, action, requestedArt, fileName, conditions)) {
+            flight.complete(true);
+            prefetcher.served(requestedArt, fileName);
+            recordServed(relativePath, fileName, ArtifactManifest.LOCAL);
+            return ProxyMetrics.LOCAL;
         }
 
-        if (checkRemoteRepositories(response, action, requestedArt, fileName)) {
-            return;
+        long lookup = System.nanoTime();
+        Upstream upstream;
+        CacheFill fill;
+        try {
+            upstream = fetchUpstream(requestedArt, fileName);
+            profiler.upstream(trace, System.nanoTime() - lookup);
+            RepositoryContent art = upstream.content();
+            fill = new CacheFill(art, openArtifact(art, requestedArt, fileName));
+        } catch (FileNotFoundException e) {
+            profiler.upstream(trace, System.nanoTime() - lookup);
+            flight.complete(false);
+            response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+            return ProxyMetrics.NONE;
+        } catch (IOException e) {
+            logger.error("error saving artifact", e );
+            flight.complete(false);
+            response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+            return ProxyMetrics.NONE;
+        } catch (RuntimeException e) {
+            flight.fail(e);
+            throw e;
         }
 
-        response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+        // once the fill started only its result completes the flight, the artifact may still land in the cache
+        completeOnFill(flight, fill, upstream, fileName, stored -> {
+            profiler.received(trace, fill.getReceived());
+            if (stored) {
+                prefetcher.served(requestedArt, fileName);
+                recordServed(relativePath, fileName, upstream.tier());
+            }
+        });
+        fill.start();
+        try {
+            action.writePendingResponse(response, fileName, requestedArt, fill, conditions);
+        } catch (FileNotFoundException e) {
+            response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+            return ProxyMetrics.NONE;
+        }
+        return upstream.source();
+    }
+
+    /**
+     * Completes the flight with the result of the fill. The flight is completed even if
+     * recording the result fails, otherwise its followers would wait forever.
+     *
+     * @param onResult called with the result of the fill before the flight completes
+     */
+    private void completeOnFill(SingleFlight.Flight flight, CacheFill fill, Upstream upstream, String fileName, Consumer<Boolean> onResult) {
+        fill.getResult().whenComplete((result, failure) -> {
+            boolean stored = result != null && result;
+            try {
+                metrics.recordFill(upstream.source(), stored, fill.getReceived());
+                onResult.accept(stored);
+            } catch (RuntimeException e) {
+                logger.warn("Error recording the download of {}: {}", fileName, e.getMessage(), e);
+            } finally {
+                flight.complete(stored);
+            }
+        });
     }
 
-    private static boolean checkLocalRepository(HttpResponse response, IRepositoryResponse action, Artifact requestedArt, String fileName) {
+    private int handleMetadataRequest(String relativePath, ConditionalRequest conditions, HttpResponse response, IRepositoryResponse action, String fileName) {
         try {
-            action.writeResponse(response, fileName, requestedArt);
-            return true;
+            MetadataService.Content content = metadataService.getFile(relativePath);
+            action.writeGeneratedResponse(response, fileName, content.content(), content.compressed(), conditions);
+            return ProxyMetrics.GENERATED;
+        } catch (FileNotFoundException e) {
+            response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+            return ProxyMetrics.NONE;
+        }
+    }
+
+    /**
+     * Checksums are not fetched from the upstream tiers, the artifact is resolved into the
+     * local repository and its digest is served from the checksum index.
+     */
+    private int handleChecksumRequest(ConditionalRequest conditions, HttpResponse response, IRepositoryResponse action, Artifact requestedArt, String fileName, ChecksumAlgorithm checksum) {
+        String artifactFile = fileName.substring(0, fileName.length() - checksum.getExtension().length() - 1);
+        try {
+            Path file = resolveLocal(requestedArt, artifactFile);
+            String digest = checksumIndex.digest(file, checksum);
+            action.writeGeneratedResponse(response, fileName, digest.getBytes(StandardCharsets.US_ASCII), null, conditions);
+            return ProxyMetrics.GENERATED;
         } catch (FileNotFoundException e) {
             // ignore
+        } catch (IOException e) {
+            logger.error("error computing checksum of {}", artifactFile, e);
         }
-        return false;
+        response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+        return ProxyMetrics.NONE;
     }
 
-    private boolean checkRemoteRepositories(HttpResponse response, IRepositoryResponse action, Artifact requestedArt, String fileName) {
-        for (var repository : remoteRepositories) {
+    /**
+     * Stores the artifact in the local repository unless it is already present.
+     *
+     * @return path of the artifact in the local repository
+     */
+    private Path resolveLocal(Artifact requestedArt, String fileName) throws IOException {
+        try {
+            return localRepository.getArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName).getPath();
+        } catch (FileNotFoundException e) {
+            // ignore
+        }
+        SingleFlight.Flight flight = inFlight.begin(flightKey(requestedArt, fileName));
+        if (flight.isLeader()) {
+            // a fetch that completed between the local check and begin() already stored the file
             try {
-                RepositoryContent art = repository.getArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName);
-                try (InputStream is = art.getInputStream()) {
-                    localRepository.putArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName, is);
-                } catch (IOException e) {
-                    logger.error("error saving artifact", e );
-                    response.setStatusCode(HttpStatus.SC_NOT_FOUND);
-                    return true;
-                }
-                action.writeResponse(response, fileName, requestedArt);
-                return true;
+                Path path = localRepository.getArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName).getPath();
+                flight.complete(true);
+                return path;
             } catch (FileNotFoundException e) {
                 // ignore
             }
+            Upstream upstream;
+            CacheFill fill;
+            try {
+                upstream = fetchUpstream(requestedArt, fileName);
+                RepositoryContent art = upstream.content();
+                fill = new CacheFill(art, openArtifact(art, requestedArt, fileName));
+            } catch (IOException e) {
+                flight.complete(false);
+                throw e;
+            } catch (RuntimeException e) {
+                flight.fail(e);
+                throw e;
+            }
+            completeOnFill(flight, fill, upstream, fileName, stored -> { });
+            fill.start();
+            fill.await();
+        } else if (!flight.await()) {
+            throw new FileNotFoundException(fileName);
         }
-        return false;
+        return localRepository.getArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName).getPath();
+    }
+
+    private static String flightKey(Artifact requestedArt, String fileName) {
+        return requestedArt.groupId() + ":" + requestedArt.name() + ":" + requestedArt.version() + "/" + fileName;
     }
 
-    private boolean checkDebianRepository(HttpResponse response, IRepositoryResponse action, Artifact requestedArt, String fileName) {
+    private static boolean checkLocalRepository(HttpResponse response, IRepositoryResponse action, Artifact requestedArt, String fileName, ConditionalRequest conditions) {
         try {
-            RepositoryContent art = debianRepository.getArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName);
-            try (InputStream is = art.getInputStream()) {
-                localRepository.putArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName, is);
-            } catch (IOException e) {
-                logger.error("error saving artifact", e );
-                response.setStatusCode(HttpStatus.SC_NOT_FOUND);
-                return true;
-            }
-            action.writeResponse(response, fileName, requestedArt);
+            action.writeResponse(response, fileName, requestedArt, conditions);
             return true;
         } catch (FileNotFoundException e) {
             // ignore
@@ -104,7 +308,142 @@ public class RepositoryManager {
         return false;
     }
 
+    /**
+     * @param tier manifest tier of the repository serving the content
+     * @param source metrics tier of the repository serving the content
+     */
+    private record Upstream(RepositoryContent content, String tier, int source) {
+    }
+
+    /**
+     * @param source metrics tier of the repository reporting the attributes
+     */
+    private record UpstreamMetadata(ArtifactMetadata metadata, int source) {
+    }
+
+    /**
+     * @return attributes of the artifact in the first tier having it, null if only a download tells
+     */
+    private UpstreamMetadata upstreamMetadata(Artifact requestedArt, String fileName) throws FileNotFoundException {
+        if (debianRepository != null) {
+            try {
+                return new UpstreamMetadata(debianRepository.getArtifactMetadata(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName),
+                        ProxyMetrics.DEBIAN);
+            } catch (FileNotFoundException e) {
+                // ignore
+            }
+        }
+        RemoteLookup.Probed probed = remoteLookup.metadata(requestedArt, fileName);
+        if (probed == null) {
+            return null;
+        }
+        return new UpstreamMetadata(probed.metadata(), ProxyMetrics.remote(remoteRepositories.indexOf(probed.repository())));
+    }
+
+    private Upstream fetchUpstream(Artifact requestedArt, String fileName) throws FileNotFoundException {
+        if (debianRepository != null) {
+            try {
+                return new Upstream(debianRepository.getArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName),
+                        ArtifactManifest.DEBIAN, ProxyMetrics.DEBIAN);
+            } catch (FileNotFoundException e) {
+                // ignore
+            }
+        }
+        RemoteLookup.Found found = remoteLookup.fetch(requestedArt, fileName);
+        return new Upstream(found.content(), ArtifactManifest.REMOTE,
+                ProxyMetrics.remote(remoteRepositories.indexOf(found.repository())));
+    }
+
+    private void recordServed(String relativePath, String fileName, String tier) {
+        // checksums are generated from the artifact, there is nothing to fetch for them
+        if (manifest != null && !ChecksumAlgorithm.isChecksum(fileName)) {
+            manifest.record(relativePath.startsWith("/") ? relativePath : "/" + relativePath, tier);
+        }
+    }
+
+    /**
+     * Fetches the files recorded in the manifest by earlier runs into the local repository,
+     * so that the build is served without upstream round trips.
+     *
+     * @return number of files fetched
+     */
+    public int warmUp() {
+        if (manifest == null) {
+            return 0;
+        }
+        long start = System.currentTimeMillis();
+        Map<String, String> entries = manifest.getEntries();
+        AtomicInteger fetched = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore permits = new Semaphore(warmUpParallelism);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (var path : entries.keySet()) {
+                String fileName = path.substring(path.lastIndexOf('/') + 1);
+                Artifact requestedArt;
+                try {
+                    requestedArt = ArtifactParseUtil.parse(path);
+                } catch (RuntimeException e) {
+                    logger.warn("Ignoring manifest entry {}: {}", path, e.getMessage());
+                    continue;
+                }
+                if (localRepository.hasArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName)) {
+                    continue;
+                }
+                permits.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        resolveLocal(requestedArt, fileName);
+                        fetched.incrementAndGet();
+                    } catch (IOException | RuntimeException e) {
+                        failed.incrementAndGet();
+                        logger.debug("Warm-up of {} failed: {}", path, e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        logger.info("Warm-up fetched {} of {} recorded files in {} ms, {} failed", fetched.get(), entries.size(),
+                System.currentTimeMillis() - start, failed.get());
+        return fetched.get();
+    }
+
+    private LocalRepository.CacheWriter openArtifact(RepositoryContent art, Artifact requestedArt, String fileName) throws IOException {
+        try {
+            return localRepository.openArtifact(requestedArt.groupId(), requestedArt.name(), requestedArt.version(), fileName);
+        } catch (IOException e) {
+            // release the upstream connection
+            try {
+                art.getInputStream().close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
     public LocalRepository getLocalRepository() {
         return localRepository;
     }
+
+    /**
+     * @return counters and latencies of the requests handled so far
+     */
+    public ProxyMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return timeline of the requests, written as a report after the build
+     */
+    public FetchProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * @return number of requests served from files stored by the prefetch
+     */
+    public long getPrefetchHits() {
+        return prefetcher.getHits();
+    }
 }
@@ -0,0 +1,64 @@
+package org.debian.mavenproxy.request;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deduplicates concurrent executions of the same task.
+ * The first caller for a key becomes the leader and runs the task, callers arriving while
+ * it runs wait for and share its result instead of running the task again.
+ */
+class SingleFlight {
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the caller for the key. The first caller becomes the leader and has to
+     * complete the flight, possibly from another thread, the other callers await its result.
+     */
+    Flight begin(String key) {
+        CompletableFuture<Boolean> own = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            return new Flight(key, running, false);
+        }
+        return new Flight(key, own, true);
+    }
+
+    class Flight {
+        private final String key;
+        private final CompletableFuture<Boolean> result;
+        private final boolean leader;
+
+        private Flight(String key, CompletableFuture<Boolean> result, boolean leader) {
+            this.key = key;
+            this.result = result;
+            this.leader = leader;
+        }
+
+        boolean isLeader() {
+            return leader;
+        }
+
+        boolean await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        void complete(boolean found) {
+            inFlight.remove(key, result);
+            result.complete(found);
+        }
+
+        void fail(Throwable e) {
+            inFlight.remove(key, result);
+            result.completeExceptionally(e);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package org.debian.mavenproxy;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ArtifactParseUtilTest {
     @Test
@@ -20,6 +22,14 @@ public class ArtifactParseUtilTest {
         assertEquals("module", art.type() );
     }
 
+    @Test
+    public void testIsMetadata() {
+        assertTrue(ArtifactParseUtil.isMetadata("/org/foo/bar/maven-metadata.xml"));
+        assertTrue(ArtifactParseUtil.isMetadata("/org/foo/bar/maven-metadata.xml.sha1"));
+        assertTrue(ArtifactParseUtil.isMetadata("/org/foo/bar/1.0-SNAPSHOT/maven-metadata.xml"));
+        assertFalse(ArtifactParseUtil.isMetadata("/org/foo/bar/1.0/bar-1.0.pom"));
+    }
+
     @Test
     public void testMapRequestPath() {
         String requestPath = "/commons-collections/commons-collections/3.2.2/commons-collections-3.2.2.pom";
@@ -0,0 +1,66 @@
+package org.debian.mavenproxy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CatalogIndexTest {
+
+    @TempDir
+    private File testDir;
+
+    private static void execute(Path catalog, String... sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + catalog);
+             Statement stmt = connection.createStatement()) {
+            for (var statement : sql) {
+                stmt.execute(statement);
+            }
+        }
+    }
+
+    @Test
+    public void testLookups() throws IOException, SQLException {
+        Path catalog = testDir.toPath().resolve("artifacts.db");
+        execute(catalog, "CREATE TABLE imported_artifacts (group_id TEXT, artifact_id TEXT, version TEXT)",
+                "INSERT INTO imported_artifacts VALUES ('org.foo', 'bar', 'debian'), ('org.foo', 'baz', '2.0'), "
+                        + "('org.foo', 'bar', '1.0'), ('org.foo', 'bar', '1.1'), ('org.qux', 'bar', '3.0')");
+        CatalogIndex index = CatalogIndex.open(catalog, Long.MAX_VALUE);
+        assertEquals(3, index.size());
+        assertEquals(List.of("debian", "1.0", "1.1"), index.getVersions("org.foo", "bar"));
+        assertEquals(List.of("3.0"), index.getVersions("org.qux", "bar"));
+        assertEquals(List.of(), index.getVersions("org.foo", "missing"));
+        assertEquals("1.0", index.getOriginalVersion("org.foo", "bar"));
+        assertNull(index.getOriginalVersion("org.foo", "missing"));
+    }
+
+    @Test
+    public void testRefresh() throws IOException, SQLException {
+        Path catalog = testDir.toPath().resolve("artifacts.db");
+        execute(catalog, "CREATE TABLE imported_artifacts (group_id TEXT, artifact_id TEXT, version TEXT)",
+                "INSERT INTO imported_artifacts VALUES ('org.foo', 'bar', 'debian')");
+        CatalogIndex index = CatalogIndex.open(catalog, Long.MAX_VALUE);
+        assertNull(index.getOriginalVersion("org.foo", "bar"));
+        assertFalse(index.refresh());
+
+        execute(catalog, "INSERT INTO imported_artifacts VALUES ('org.foo', 'bar', '1.0')");
+        Files.setLastModifiedTime(catalog, FileTime.fromMillis(Files.getLastModifiedTime(catalog).toMillis() + 2000));
+        assertTrue(index.refresh());
+        assertEquals(List.of("debian", "1.0"), index.getVersions("org.foo", "bar"));
+        assertEquals("1.0", index.getOriginalVersion("org.foo", "bar"));
+    }
+}
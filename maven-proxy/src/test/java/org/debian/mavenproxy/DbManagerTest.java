@@ -0,0 +1,129 @@
+package org.debian.mavenproxy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DbManagerTest {
+
+    @TempDir
+    private File testDir;
+
+    @Test
+    public void testQueuedWritesAreVisible() throws Exception {
+        DbManager dbManager = new DbManager(testDir + "/test.db");
+        dbManager.initialize();
+        dbManager.blacklist("https://example.org/missing.pom", Long.MAX_VALUE);
+        dbManager.storeDebianToVersion("org.foo", "bar", "1.2");
+        dbManager.storeChecksums("/tmp/bar.jar", 3, 4, Map.of("sha1", "abc"));
+        assertEquals("1.2", dbManager.readOriginalVersion("org.foo", "bar"));
+        // reads see the writes once the writer thread committed them
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((!dbManager.isBlacklisted("https://example.org/missing.pom") || dbManager.findChecksums("/tmp/bar.jar", 3, 4).isEmpty())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(dbManager.isBlacklisted("https://example.org/missing.pom"));
+        assertEquals(Map.of("sha1", "abc"), dbManager.findChecksums("/tmp/bar.jar", 3, 4));
+        dbManager.close();
+    }
+
+    @Test
+    public void testReadsDoNotWaitForWriter() throws Exception {
+        DbManager dbManager = new DbManager(testDir + "/test.db");
+        dbManager.initialize();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + testDir + "/test.db");
+             Statement stmt = connection.createStatement()) {
+            // another writer holds the database, the queued write waits for it
+            stmt.execute("BEGIN IMMEDIATE");
+            dbManager.blacklist("https://example.org/missing.pom", Long.MAX_VALUE);
+            Thread.sleep(200);
+            long start = System.nanoTime();
+            assertFalse(dbManager.isBlacklisted("https://example.org/missing.pom"));
+            assertEquals(Map.of(), dbManager.findChecksums("/tmp/bar.jar", 3, 4));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+            stmt.execute("COMMIT");
+        }
+        dbManager.close();
+
+        DbManager reopened = new DbManager(testDir + "/test.db");
+        reopened.initialize();
+        assertTrue(reopened.isBlacklisted("https://example.org/missing.pom"));
+        reopened.close();
+    }
+
+    @Test
+    public void testSharedCatalog() throws SQLException {
+        String catalog = testDir + "/artifacts.db";
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + catalog);
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE imported_artifacts (group_id TEXT, artifact_id TEXT, version TEXT)");
+            stmt.execute("INSERT INTO imported_artifacts VALUES ('org.foo', 'bar', '1.0'), ('org.foo', 'bar', 'debian')");
+        }
+        DbManager first = new DbManager(testDir + "/first.db", catalog);
+        DbManager second = new DbManager(testDir + "/second.db", catalog);
+        first.initialize();
+        second.initialize();
+        assertEquals(List.of("1.0", "debian"), first.findVersion("org.foo", "bar"));
+        assertEquals("1.0", second.readOriginalVersion("org.foo", "bar"));
+        first.blacklist("https://example.org/missing.pom", Long.MAX_VALUE);
+        first.close();
+        assertFalse(second.isBlacklisted("https://example.org/missing.pom"));
+        second.close();
+
+        // the catalog is not written to
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + catalog);
+             ResultSet rs = connection.createStatement().executeQuery("SELECT COUNT(*) FROM sqlite_master")) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testDebianToVersionReload() {
+        DbManager dbManager = new DbManager(testDir + "/test.db");
+        dbManager.initialize();
+        dbManager.storeDebianToVersion("org.foo", "bar", "1.2");
+        dbManager.storeDebianToVersion("org.foo", "bar", "1.10");
+        dbManager.storeDebianToVersion("org.foo", "bar", "1.3");
+        dbManager.storeDebianToVersion("org.foo", "bar", "1.2");
+        assertEquals("1.2", dbManager.readOriginalVersion("org.foo", "bar"));
+        dbManager.close();
+
+        // the version stored last is loaded, not the first row of the primary key order
+        DbManager reopened = new DbManager(testDir + "/test.db");
+        reopened.initialize();
+        assertEquals("1.2", reopened.readOriginalVersion("org.foo", "bar"));
+        reopened.close();
+    }
+
+    @Test
+    public void testCloseWritesQueue() throws SQLException {
+        DbManager dbManager = new DbManager(testDir + "/test.db");
+        dbManager.initialize();
+        for (int i = 0; i < 5000; ++i) {
+            dbManager.logUniqueArtifact("org.foo", "bar", "1." + i, "/org/foo/bar/1." + i + "/bar-1." + i + ".pom", "https://repo");
+        }
+        dbManager.close();
+
+        DbManager reopened = new DbManager(testDir + "/test.db");
+        reopened.initialize();
+        assertEquals(5000, reopened.loadRemoteRoutes().getFirst().count());
+        assertTrue(reopened.hasArtifact("org.foo", "bar", "1.4999", "/org/foo/bar/1.4999/bar-1.4999.pom", "https://repo"));
+        assertEquals(0, reopened.getDroppedWrites());
+        reopened.close();
+    }
+}
@@ -1,16 +1,57 @@
 package org.debian.mavenproxy;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.debian.mavenproxy.request.ConditionalRequest;
+import org.debian.mavenproxy.request.GetRepositoryResponse;
+import org.debian.mavenproxy.request.HeadRepositoryResponse;
+import org.debian.mavenproxy.request.RepositoryManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RepositoryManagerTest {
 
@@ -18,6 +59,569 @@ public class RepositoryManagerTest {
     private File testDir;
     @TempDir
     private File debianDir;
+    @TempDir
+    private File catalogDir;
+
+    private HttpServer upstream;
+    private final byte[] artifact = new byte[2 * 1024 * 1024 + 3];
+    private final AtomicInteger artifactDownloads = new AtomicInteger();
+
+    @BeforeEach
+    public void startUpstream() throws IOException {
+        new Random(1).nextBytes(artifact);
+        upstream = ServerBootstrap.bootstrap()
+                .setListenerPort(0)
+                .registerHandler("*", (request, response, context) -> {
+                    String uri = request.getRequestLine().getUri();
+                    if (uri.endsWith("/org/foo/bar/maven-metadata.xml")) {
+                        response.setStatusCode(HttpStatus.SC_OK);
+                        response.setEntity(new StringEntity("""
+                                <metadata>
+                                  <groupId>org.foo</groupId>
+                                  <artifactId>bar</artifactId>
+                                  <versioning>
+                                    <versions><version>0.9</version><version>1.0</version></versions>
+                                    <lastUpdated>20240101000000</lastUpdated>
+                                  </versioning>
+                                </metadata>
+                                """, StandardCharsets.UTF_8));
+                    } else if (uri.endsWith("/dep-2.0.pom") || uri.endsWith("/parent-1.pom")) {
+                        response.setStatusCode(HttpStatus.SC_OK);
+                        response.setEntity(new StringEntity("<project/>", StandardCharsets.UTF_8));
+                    } else if (uri.endsWith("/bar-1.0.jar")) {
+                        if (request.getRequestLine().getMethod().equals("GET")) {
+                            artifactDownloads.incrementAndGet();
+                        }
+                        response.setStatusCode(HttpStatus.SC_OK);
+                        response.setEntity(new ByteArrayEntity(artifact));
+                    } else if (uri.endsWith("/broken-1.0.jar")) {
+                        // announce the full artifact but fail half way through
+                        InputStream failing = new SequenceInputStream(new ByteArrayInputStream(artifact, 0, artifact.length / 2),
+                                new InputStream() {
+                                    @Override
+                                    public int read() throws IOException {
+                                        throw new IOException("connection lost");
+                                    }
+                                });
+                        response.setStatusCode(HttpStatus.SC_OK);
+                        response.setEntity(new InputStreamEntity(failing, artifact.length));
+                    } else {
+                        response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+                    }
+                })
+                .create();
+        upstream.start();
+    }
+
+    @AfterEach
+    public void stopUpstream() {
+        upstream.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    private RepositoryManager createRepositoryManager() {
+        return new RepositoryManager(testDir.getAbsolutePath(), null,
+                List.of("http://localhost:" + upstream.getLocalPort()), null, null, Map.of(), null);
+    }
+
+    private RepositoryManager createDebianRepositoryManager(List<String> ignoreRules, List<String> replaceRules) {
+        return new RepositoryManager(testDir.getAbsolutePath(), debianDir.getAbsolutePath(),
+                List.of("http://localhost:" + upstream.getLocalPort()), ignoreRules, replaceRules, Map.of(), null);
+    }
+
+    private Path installDebian(String groupId, String artifactId, String version, byte[] jar) throws IOException {
+        Path dir = debianDir.toPath().resolve(groupId.replace('.', '/')).resolve(artifactId).resolve(version);
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve(artifactId + "-" + version + ".pom"), """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <project>
+                  <modelVersion>4.0.0</modelVersion>
+                  <groupId>%s</groupId>
+                  <artifactId>%s</artifactId>
+                  <version>%s</version>
+                  <dependencies>
+                    <dependency><groupId>org.dep</groupId><artifactId>dep</artifactId><version>debian</version></dependency>
+                  </dependencies>
+                </project>
+                """.formatted(groupId, artifactId, version));
+        return Files.write(dir.resolve(artifactId + "-" + version + ".jar"), jar);
+    }
+
+    private static HttpResponse get(RepositoryManager repositoryManager, String path) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest(path, response, new GetRepositoryResponse(repositoryManager.getLocalRepository()));
+        return response;
+    }
+
+    @Test
+    public void testDebianArtifact() throws IOException {
+        byte[] jar = "debian jar".getBytes(StandardCharsets.UTF_8);
+        installDebian("org.deb", "lib", "debian", jar);
+        RepositoryManager repositoryManager = createDebianRepositoryManager(null, null);
+
+        HttpResponse response = get(repositoryManager, "/org/deb/lib/1.2/lib-1.2.jar");
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertArrayEquals(jar, EntityUtils.toByteArray(response.getEntity()));
+        response = get(repositoryManager, "/org/deb/lib/1.2/lib-1.2.pom");
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertTrue(EntityUtils.toString(response.getEntity()).contains("<artifactId>lib</artifactId>"));
+        // stored in the local repository like any upstream file
+        assertArrayEquals(jar, Files.readAllBytes(testDir.toPath().resolve("org/deb/lib/1.2/lib-1.2.jar")));
+
+        // other files and artifacts missing from Debian go to the remotes
+        assertEquals(HttpStatus.SC_NOT_FOUND, get(repositoryManager, "/org/deb/lib/1.2/lib-1.2-sources.jar").getStatusLine().getStatusCode());
+        response = get(repositoryManager, "/org/foo/bar/1.0/bar-1.0.jar");
+        assertArrayEquals(artifact, EntityUtils.toByteArray(response.getEntity()));
+    }
+
+    private static HttpResponse head(RepositoryManager repositoryManager, String path) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest(path, response, new HeadRepositoryResponse(repositoryManager.getLocalRepository()));
+        return response;
+    }
+
+    @Test
+    public void testHeadDoesNotDownload() throws IOException {
+        byte[] jar = "debian jar".getBytes(StandardCharsets.UTF_8);
+        installDebian("org.deb", "lib", "debian", jar);
+        RepositoryManager repositoryManager = createDebianRepositoryManager(null, null);
+
+        HttpResponse response = head(repositoryManager, "/org/foo/bar/1.0/bar-1.0.jar");
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertEquals(artifact.length, response.getEntity().getContentLength());
+        response = head(repositoryManager, "/org/deb/lib/1.2/lib-1.2.jar");
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertEquals(jar.length, response.getEntity().getContentLength());
+        assertEquals(HttpStatus.SC_NOT_FOUND, head(repositoryManager, "/org/foo/missing/1.0/missing-1.0.jar").getStatusLine().getStatusCode());
+
+        // answered from the attributes of the tiers, nothing was downloaded or stored
+        assertEquals(0, artifactDownloads.get());
+        assertFalse(Files.exists(testDir.toPath().resolve("org/foo/bar/1.0/bar-1.0.jar")));
+        assertFalse(Files.exists(testDir.toPath().resolve("org/deb/lib/1.2/lib-1.2.jar")));
+    }
+
+    @Test
+    public void testLeaderRechecksLocalRepository() throws IOException {
+        RepositoryManager repositoryManager = createRepositoryManager();
+        Path stored = testDir.toPath().resolve("org/foo/bar/1.0/bar-1.0.jar");
+        // another request stores the artifact between the first local check and the start of the flight
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository()) {
+            private boolean checked;
+
+            @Override
+            public void writeResponse(HttpResponse response, String fileName, Artifact requestedArt, ConditionalRequest conditions) throws FileNotFoundException {
+                if (!checked) {
+                    checked = true;
+                    try {
+                        Files.createDirectories(stored.getParent());
+                        Files.write(stored, artifact);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    throw new FileNotFoundException(fileName);
+                }
+                super.writeResponse(response, fileName, requestedArt, conditions);
+            }
+        };
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/bar/1.0/bar-1.0.jar", response, get);
+
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertArrayEquals(artifact, EntityUtils.toByteArray(response.getEntity()));
+        assertEquals(0, artifactDownloads.get());
+    }
+
+    @Test
+    public void testDebianCatalogVersions() throws Exception {
+        String catalog = catalogDir.toPath().resolve("artifacts.db").toString();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + catalog);
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE imported_artifacts (group_id TEXT, artifact_id TEXT, version TEXT)");
+            stmt.execute("INSERT INTO imported_artifacts VALUES ('org.deb', 'lib', 'debian'), ('org.deb', 'lib', '3.1'),"
+                    + " ('org.deb', 'linked', 'debian')");
+        }
+        byte[] jar = "debian jar".getBytes(StandardCharsets.UTF_8);
+        installDebian("org.deb", "lib", "debian", jar);
+        // the scan does not follow a symbolic link to a version directory, only the catalog knows it
+        Path target = catalogDir.toPath().resolve("linked-debian");
+        Files.createDirectories(target);
+        Files.write(target.resolve("linked-debian.jar"), jar);
+        Path linkedDir = debianDir.toPath().resolve("org/deb/linked");
+        Files.createDirectories(linkedDir);
+        Files.createSymbolicLink(linkedDir.resolve("debian"), target);
+
+        DbManager dbManager = new DbManager(catalogDir.toPath().resolve("state.db").toString(), catalog);
+        dbManager.initialize();
+        try {
+            RepositoryManager repositoryManager = new RepositoryManager(testDir.getAbsolutePath(), debianDir.getAbsolutePath(),
+                    List.of("http://localhost:" + upstream.getLocalPort()), null, null, Map.of(), dbManager);
+
+            // an artifact only installed as debian is listed with the version it was imported from
+            String metadata = EntityUtils.toString(get(repositoryManager, "/org/deb/lib/maven-metadata.xml").getEntity());
+            assertTrue(metadata.contains("<versions><version>3.1</version></versions>"), metadata);
+            HttpResponse response = get(repositoryManager, "/org/deb/lib/3.1/lib-3.1.jar");
+            assertArrayEquals(jar, EntityUtils.toByteArray(response.getEntity()));
+
+            response = get(repositoryManager, "/org/deb/linked/1.0/linked-1.0.jar");
+            assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+            assertArrayEquals(jar, EntityUtils.toByteArray(response.getEntity()));
+            assertEquals(HttpStatus.SC_NOT_FOUND, get(repositoryManager, "/org/deb/unknown/1.0/unknown-1.0.jar").getStatusLine().getStatusCode());
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    @Test
+    public void testDebianPomIsRewritten() throws IOException {
+        installDebian("org.deb", "lib", "debian", new byte[0]);
+        RepositoryManager repositoryManager = createDebianRepositoryManager(null, null);
+
+        HttpResponse response = get(repositoryManager, "/org/deb/lib/1.2/lib-1.2.pom");
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        String pom = EntityUtils.toString(response.getEntity());
+        // the project takes the requested version, the rest of the Debian POM is kept
+        assertTrue(pom.contains("<artifactId>lib</artifactId>\n  <version>1.2</version>"), pom);
+        assertTrue(pom.contains("<dependency><groupId>org.dep</groupId><artifactId>dep</artifactId><version>debian</version></dependency>"), pom);
+        assertEquals(pom, Files.readString(testDir.toPath().resolve("org/deb/lib/1.2/lib-1.2.pom")));
+    }
+
+    @Test
+    public void testDebianRules() throws IOException {
+        byte[] jar = "debian jar".getBytes(StandardCharsets.UTF_8);
+        installDebian("org.deb", "lib", "debian", jar);
+        RepositoryManager repositoryManager = createDebianRepositoryManager(
+                List.of("org.ignored * * *"),
+                List.of("s/^org\\.old$/org.deb/ * * *"));
+
+        // the replace rule maps the old groupId to the installed artifact
+        HttpResponse response = get(repositoryManager, "/org/old/lib/2.0/lib-2.0.jar");
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertArrayEquals(jar, EntityUtils.toByteArray(response.getEntity()));
+        response = get(repositoryManager, "/org/old/lib/2.0/lib-2.0.pom");
+        String pom = EntityUtils.toString(response.getEntity());
+        assertTrue(pom.contains("<groupId>org.old</groupId>"), pom);
+
+        // ignored artifacts are answered with a placeholder, they are not looked up anywhere
+        response = get(repositoryManager, "/org/ignored/tool/1.0/tool-1.0.pom");
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        pom = EntityUtils.toString(response.getEntity());
+        assertTrue(pom.contains("<groupId>org.ignored</groupId>") && pom.contains("<artifactId>tool</artifactId>"), pom);
+        response = get(repositoryManager, "/org/ignored/tool/1.0/tool-1.0.jar");
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertTrue(EntityUtils.toByteArray(response.getEntity()).length > 0);
+
+        assertEquals(HttpStatus.SC_NOT_FOUND, get(repositoryManager, "/org/other/lib/2.0/lib-2.0.jar").getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void testMergedMetadataWithDebianVersions() throws IOException {
+        installDebian("org.foo", "bar", "1.1", new byte[0]);
+        installDebian("org.deb", "lib", "2.0", new byte[0]);
+        installDebian("org.deb", "lib", "debian", new byte[0]);
+        RepositoryManager repositoryManager = createDebianRepositoryManager(null, null);
+
+        String metadata = EntityUtils.toString(get(repositoryManager, "/org/foo/bar/maven-metadata.xml").getEntity());
+        assertTrue(metadata.contains("<version>0.9</version><version>1.0</version><version>1.1</version>"), metadata);
+        assertTrue(metadata.contains("<latest>1.1</latest>"), metadata);
+
+        // artifacts only found in Debian get metadata as well
+        HttpResponse response = get(repositoryManager, "/org/deb/lib/maven-metadata.xml");
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        metadata = EntityUtils.toString(response.getEntity());
+        assertTrue(metadata.contains("<versions><version>2.0</version></versions>"), metadata);
+    }
+
+    @Test
+    public void testStreamRemoteArtifact() throws IOException {
+        RepositoryManager repositoryManager = createRepositoryManager();
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository());
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/bar/1.0/bar-1.0.jar", response, get);
+
+        assertEquals(artifact.length, response.getEntity().getContentLength());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getEntity().writeTo(out);
+        assertArrayEquals(artifact, out.toByteArray());
+
+        Path cached = testDir.toPath().resolve("org/foo/bar/1.0/bar-1.0.jar");
+        // the download completes in the background, a second request waits for it and is served from the cache
+        HttpResponse second = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/bar/1.0/bar-1.0.jar", second, get);
+        assertEquals(HttpStatus.SC_OK, second.getStatusLine().getStatusCode());
+        assertArrayEquals(artifact, Files.readAllBytes(cached));
+        assertTrue(Files.exists(Path.of(cached + ".sha1")));
+    }
+
+    @Test
+    public void testChecksumBeforeArtifact() throws Exception {
+        RepositoryManager repositoryManager = createRepositoryManager();
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository());
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/bar/1.0/bar-1.0.jar.sha256", response, get);
+
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(artifact));
+        assertEquals(expected, EntityUtils.toString(response.getEntity()));
+        assertTrue(Files.exists(testDir.toPath().resolve("org/foo/bar/1.0/bar-1.0.jar")));
+
+        HttpResponse missing = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/baz/1.0/baz-1.0.jar.sha1", missing, get);
+        assertEquals(HttpStatus.SC_NOT_FOUND, missing.getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void testMergedMetadata() throws Exception {
+        RepositoryManager repositoryManager = createRepositoryManager();
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository());
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/bar/maven-metadata.xml", response, get);
+        String metadata = EntityUtils.toString(response.getEntity());
+        assertTrue(metadata.contains("<version>0.9</version><version>1.0</version>"));
+        assertTrue(metadata.contains("<latest>1.0</latest>"));
+
+        // versions stored in the local repository show up without refreshing from upstream
+        repositoryManager.getLocalRepository().putArtifact("org.foo", "bar", "1.1", "bar-1.1.pom",
+                new ByteArrayInputStream("<project/>".getBytes(StandardCharsets.UTF_8)));
+        response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/bar/maven-metadata.xml", response, get);
+        byte[] merged = EntityUtils.toByteArray(response.getEntity());
+        assertTrue(new String(merged, StandardCharsets.UTF_8).contains("<version>1.0</version><version>1.1</version>"));
+
+        response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/bar/maven-metadata.xml.sha1", response, get);
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(merged)), EntityUtils.toString(response.getEntity()));
+
+        response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/missing/maven-metadata.xml", response, get);
+        assertEquals(HttpStatus.SC_NOT_FOUND, response.getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void testConditionalRequest() throws Exception {
+        RepositoryManager repositoryManager = createRepositoryManager();
+        repositoryManager.getLocalRepository().putArtifact("org.foo", "baz", "1.0", "baz-1.0.jar", new ByteArrayInputStream(artifact));
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository());
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/baz/1.0/baz-1.0.jar", response, get);
+        String etag = response.getFirstHeader("ETag").getValue();
+        String lastModified = response.getFirstHeader("Last-Modified").getValue();
+        assertEquals("\"" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(artifact)) + "\"", etag);
+
+        BasicHttpRequest request = new BasicHttpRequest("GET", "/org/foo/baz/1.0/baz-1.0.jar");
+        request.setHeader("If-None-Match", etag);
+        response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/baz/1.0/baz-1.0.jar", ConditionalRequest.of(request), response, get);
+        assertEquals(HttpStatus.SC_NOT_MODIFIED, response.getStatusLine().getStatusCode());
+        assertNull(response.getEntity());
+
+        request = new BasicHttpRequest("GET", "/org/foo/baz/1.0/baz-1.0.jar");
+        request.setHeader("If-Modified-Since", lastModified);
+        response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/baz/1.0/baz-1.0.jar", ConditionalRequest.of(request), response, get);
+        assertEquals(HttpStatus.SC_NOT_MODIFIED, response.getStatusLine().getStatusCode());
+
+        request = new BasicHttpRequest("GET", "/org/foo/baz/1.0/baz-1.0.jar");
+        request.setHeader("If-None-Match", "\"0000\"");
+        request.setHeader("If-Modified-Since", lastModified);
+        response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/baz/1.0/baz-1.0.jar", ConditionalRequest.of(request), response, get);
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertEquals(artifact.length, response.getEntity().getContentLength());
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        RepositoryManager repositoryManager = new RepositoryManager(testDir.getAbsolutePath(), null,
+                List.of("http://localhost:" + upstream.getLocalPort()), null, null,
+                Map.of("prefetch", Map.of("enabled", true)), null);
+        String pom = """
+                <project>
+                  <parent><groupId>org.foo</groupId><artifactId>parent</artifactId><version>1</version></parent>
+                  <artifactId>app</artifactId>
+                  <properties><dep.version>2.0</dep.version></properties>
+                  <dependencies>
+                    <dependency><groupId>org.foo</groupId><artifactId>dep</artifactId><version>${dep.version}</version></dependency>
+                    <dependency><groupId>org.foo</groupId><artifactId>tests</artifactId><version>1.0</version><scope>test</scope></dependency>
+                  </dependencies>
+                </project>
+                """;
+        repositoryManager.getLocalRepository().putArtifact("org.foo", "app", "1.0", "app-1.0.pom",
+                new ByteArrayInputStream(pom.getBytes(StandardCharsets.UTF_8)));
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository());
+        repositoryManager.handleRequest("/org/foo/app/1.0/app-1.0.pom", new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"), get);
+
+        Path dep = testDir.toPath().resolve("org/foo/dep/2.0/dep-2.0.pom");
+        Path parent = testDir.toPath().resolve("org/foo/parent/1/parent-1.pom");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!(Files.exists(dep) && Files.exists(parent)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(Files.exists(dep));
+        assertTrue(Files.exists(parent));
+
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/dep/2.0/dep-2.0.pom", response, get);
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertEquals(1, repositoryManager.getPrefetchHits());
+    }
+
+    @Test
+    public void testManifestWarmUp() throws Exception {
+        String dbPath = debianDir.toPath().resolve("state.db").toString();
+        Map<String, Object> config = Map.of("manifest", Map.of("enabled", true));
+        DbManager dbManager = new DbManager(dbPath);
+        dbManager.initialize();
+        RepositoryManager repositoryManager = new RepositoryManager(testDir.getAbsolutePath(), null,
+                List.of("http://localhost:" + upstream.getLocalPort()), null, null, config, dbManager);
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository());
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/bar/1.0/bar-1.0.jar", response, get);
+        EntityUtils.consume(response.getEntity());
+        // served from the cache once the download completed
+        repositoryManager.handleRequest("/org/foo/bar/1.0/bar-1.0.jar.sha1", new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"), get);
+        dbManager.close();
+
+        dbManager = new DbManager(dbPath);
+        dbManager.initialize();
+        try {
+            assertEquals(Map.of("/org/foo/bar/1.0/bar-1.0.jar", "remote"), dbManager.loadServedFiles());
+            Path emptyCache = debianDir.toPath().resolve("cache");
+            RepositoryManager rebuild = new RepositoryManager(emptyCache.toString(), null,
+                    List.of("http://localhost:" + upstream.getLocalPort()), null, null, config, dbManager);
+            assertEquals(1, rebuild.warmUp());
+            assertArrayEquals(artifact, Files.readAllBytes(emptyCache.resolve("org/foo/bar/1.0/bar-1.0.jar")));
+            assertEquals(0, rebuild.warmUp());
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        RepositoryManager repositoryManager = createRepositoryManager();
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository());
+        HeadRepositoryResponse head = new HeadRepositoryResponse(repositoryManager.getLocalRepository());
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/bar/1.0/bar-1.0.jar", response, get);
+        EntityUtils.consume(response.getEntity());
+        repositoryManager.handleRequest("/org/foo/bar/1.0/bar-1.0.jar", new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"), head);
+        repositoryManager.handleRequest("/org/foo/missing/1.0/missing-1.0.jar", new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"), get);
+
+        String remote = "tier=\"remote\",remote=\"http://localhost:" + upstream.getLocalPort() + "\"";
+        List<String> lines = repositoryManager.getMetrics().render().lines().toList();
+        assertTrue(lines.contains("maven_proxy_requests_total{method=\"GET\"," + remote + ",outcome=\"ok\"} 1"));
+        assertTrue(lines.contains("maven_proxy_requests_total{method=\"HEAD\",tier=\"local\",outcome=\"ok\"} 1"));
+        assertTrue(lines.contains("maven_proxy_requests_total{method=\"GET\",tier=\"none\",outcome=\"not_found\"} 1"));
+        assertTrue(lines.contains("maven_proxy_request_duration_seconds_count{method=\"GET\"," + remote + "} 1"));
+        assertTrue(lines.contains("maven_proxy_request_duration_seconds_bucket{method=\"HEAD\",tier=\"local\",le=\"+Inf\"} 1"));
+        assertTrue(lines.contains("maven_proxy_response_bytes_total{" + remote + "} " + artifact.length));
+    }
+
+    private HttpResponse gzipRequest(RepositoryManager repositoryManager, String path) {
+        BasicHttpRequest request = new BasicHttpRequest("GET", path);
+        request.setHeader("Accept-Encoding", "deflate, gzip;q=0.8");
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest(path, ConditionalRequest.of(request), response,
+                new GetRepositoryResponse(repositoryManager.getLocalRepository()));
+        return response;
+    }
+
+    private static byte[] gunzip(HttpResponse response) throws IOException {
+        try (InputStream is = new GZIPInputStream(response.getEntity().getContent())) {
+            return is.readAllBytes();
+        }
+    }
+
+    @Test
+    public void testCompressedResponse() throws Exception {
+        RepositoryManager repositoryManager = createRepositoryManager();
+        byte[] pom = "<project><modelVersion>4.0.0</modelVersion></project>".repeat(50).getBytes(StandardCharsets.UTF_8);
+        repositoryManager.getLocalRepository().putArtifact("org.foo", "baz", "1.0", "baz-1.0.pom", new ByteArrayInputStream(pom));
+        repositoryManager.getLocalRepository().putArtifact("org.foo", "baz", "1.0", "baz-1.0.jar", new ByteArrayInputStream(artifact));
+
+        HttpResponse response = gzipRequest(repositoryManager, "/org/foo/baz/1.0/baz-1.0.pom");
+        assertEquals("gzip", response.getFirstHeader("Content-Encoding").getValue());
+        assertEquals("Accept-Encoding", response.getFirstHeader("Vary").getValue());
+        assertTrue(response.getEntity().getContentLength() < pom.length);
+        assertArrayEquals(pom, gunzip(response));
+        String etag = response.getFirstHeader("ETag").getValue();
+
+        response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/baz/1.0/baz-1.0.pom", response, new GetRepositoryResponse(repositoryManager.getLocalRepository()));
+        assertNull(response.getFirstHeader("Content-Encoding"));
+        assertNotEquals(etag, response.getFirstHeader("ETag").getValue());
+        assertArrayEquals(pom, EntityUtils.toByteArray(response.getEntity()));
+
+        // archives are sent as stored
+        response = gzipRequest(repositoryManager, "/org/foo/baz/1.0/baz-1.0.jar");
+        assertNull(response.getFirstHeader("Content-Encoding"));
+        assertEquals(artifact.length, response.getEntity().getContentLength());
+
+        response = gzipRequest(repositoryManager, "/org/foo/bar/maven-metadata.xml");
+        assertEquals("gzip", response.getFirstHeader("Content-Encoding").getValue());
+        assertTrue(new String(gunzip(response), StandardCharsets.UTF_8).contains("<latest>1.0</latest>"));
+    }
+
+    private HttpResponse rangeRequest(RepositoryManager repositoryManager, String range, String ifRange) {
+        BasicHttpRequest request = new BasicHttpRequest("GET", "/org/foo/baz/1.0/baz-1.0.jar");
+        request.setHeader("Range", range);
+        if (ifRange != null) {
+            request.setHeader("If-Range", ifRange);
+        }
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/baz/1.0/baz-1.0.jar", ConditionalRequest.of(request), response,
+                new GetRepositoryResponse(repositoryManager.getLocalRepository()));
+        return response;
+    }
+
+    @Test
+    public void testRangeRequest() throws Exception {
+        RepositoryManager repositoryManager = createRepositoryManager();
+        repositoryManager.getLocalRepository().putArtifact("org.foo", "baz", "1.0", "baz-1.0.jar", new ByteArrayInputStream(artifact));
+
+        HttpResponse response = rangeRequest(repositoryManager, "bytes=100-199", null);
+        assertEquals(HttpStatus.SC_PARTIAL_CONTENT, response.getStatusLine().getStatusCode());
+        assertEquals("bytes 100-199/" + artifact.length, response.getFirstHeader("Content-Range").getValue());
+        assertArrayEquals(Arrays.copyOfRange(artifact, 100, 200), EntityUtils.toByteArray(response.getEntity()));
+
+        response = rangeRequest(repositoryManager, "bytes=-10", null);
+        assertArrayEquals(Arrays.copyOfRange(artifact, artifact.length - 10, artifact.length), EntityUtils.toByteArray(response.getEntity()));
+
+        response = rangeRequest(repositoryManager, "bytes=0-1,10-11", null);
+        assertEquals(HttpStatus.SC_PARTIAL_CONTENT, response.getStatusLine().getStatusCode());
+        assertTrue(response.getFirstHeader("Content-Type").getValue().startsWith("multipart/byteranges; boundary="));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getEntity().writeTo(out);
+        byte[] multipart = out.toByteArray();
+        assertEquals(response.getEntity().getContentLength(), multipart.length);
+        String body = new String(multipart, StandardCharsets.ISO_8859_1);
+        assertTrue(body.contains("Content-Range: bytes 0-1/" + artifact.length));
+        assertTrue(body.contains("Content-Range: bytes 10-11/" + artifact.length));
+
+        response = rangeRequest(repositoryManager, "bytes=" + artifact.length + "-", null);
+        assertEquals(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusLine().getStatusCode());
+        assertEquals("bytes */" + artifact.length, response.getFirstHeader("Content-Range").getValue());
+
+        // the client copy changed, send the full artifact
+        response = rangeRequest(repositoryManager, "bytes=100-199", "\"0000\"");
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertEquals(artifact.length, response.getEntity().getContentLength());
+        String etag = response.getFirstHeader("ETag").getValue();
+        response = rangeRequest(repositoryManager, "bytes=100-199", etag);
+        assertEquals(HttpStatus.SC_PARTIAL_CONTENT, response.getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void testAbortedTransferIsNotCached() throws IOException {
+        RepositoryManager repositoryManager = createRepositoryManager();
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository());
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest("/org/foo/broken/1.0/broken-1.0.jar", response, get);
+
+        assertThrows(IOException.class, () -> response.getEntity().writeTo(new ByteArrayOutputStream()));
+        try (Stream<Path> files = Files.list(testDir.toPath().resolve("org/foo/broken/1.0"))) {
+            assertEquals(0, files.count());
+        }
+    }
 
     @Test
     public void testRepositoryManager() throws IOException {
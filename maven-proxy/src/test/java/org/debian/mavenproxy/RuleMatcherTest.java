@@ -0,0 +1,52 @@
+package org.debian.mavenproxy;
+
+import org.debian.maven.repo.Dependency;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RuleMatcherTest {
+
+    @Test
+    public void testMatches() {
+        RuleMatcher matcher = new RuleMatcher(List.of(
+                "org.foo bar * *",
+                "org.baz * * *",
+                "org.qux.* * * *",
+                "s/^com\\.example$/x/ * * *"));
+
+        assertTrue(matcher.matches(new Dependency("org.foo", "bar", "jar", "1.0")));
+        assertFalse(matcher.matches(new Dependency("org.foo", "baz", "jar", "1.0")));
+        assertTrue(matcher.matches(new Dependency("org.baz", "any", "pom", "1.0")));
+        assertTrue(matcher.matches(new Dependency("org.qux.sub", "any", "jar", "2.0")));
+        assertFalse(matcher.matches(new Dependency("org.qu", "any", "jar", "2.0")));
+        assertTrue(matcher.matches(new Dependency("com.example", "any", "jar", "2.0")));
+        assertFalse(matcher.matches(new Dependency("com.example.sub", "any", "jar", "2.0")));
+        // memoized decisions give the same answer
+        assertTrue(matcher.matches(new Dependency("org.foo", "bar", "jar", "1.0")));
+        assertFalse(new RuleMatcher(null).matches(new Dependency("org.foo", "bar", "jar", "1.0")));
+    }
+
+    @Test
+    public void testApplyFirstRule() {
+        RuleMatcher matcher = new RuleMatcher(List.of(
+                "junit junit * s/^.*$/4.x/",
+                "s/^org\\.junit$/junit/ * * s/^.*$/5.x/",
+                "junit * * s/^.*$/3.x/"));
+
+        Dependency junit = matcher.apply(new Dependency("junit", "junit", "jar", "4.13.2"));
+        assertEquals("4.x", junit.getVersion());
+        Dependency other = matcher.apply(new Dependency("junit", "other", "jar", "1.0"));
+        assertEquals("3.x", other.getVersion());
+        Dependency renamed = matcher.apply(new Dependency("org.junit", "junit", "jar", "5.0"));
+        assertEquals("junit", renamed.getGroupId());
+        assertEquals("5.x", renamed.getVersion());
+        Dependency unchanged = new Dependency("org.foo", "bar", "jar", "1.0");
+        assertSame(unchanged, matcher.apply(unchanged));
+    }
+}
@@ -0,0 +1,93 @@
+package org.debian.mavenproxy.repositories;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DebianIndexTest {
+
+    @TempDir
+    private File testDir;
+
+    private Path install(String groupId, String artifactId, String version) throws IOException {
+        Path dir = testDir.toPath().resolve(groupId.replace(".", "/")).resolve(artifactId).resolve(version);
+        Files.createDirectories(dir);
+        return Files.writeString(dir.resolve(artifactId + "-" + version + ".pom"), "<project/>");
+    }
+
+    @Test
+    public void testResolveVersion() throws IOException {
+        install("org.foo", "bar", "1.10");
+        install("org.foo", "bar", "1.9");
+        install("org.foo", "bar", "1.10-rc1");
+        install("org.foo", "baz", "2.0");
+        install("org.foo", "baz", "debian");
+        DebianIndex index = new DebianIndex(testDir.toPath());
+        index.scan();
+
+        assertEquals(List.of("1.9", "1.10-rc1", "1.10"), index.getVersions("org.foo", "bar"));
+        assertEquals("1.9", index.resolveVersion("org.foo", "bar", "1.9"));
+        assertEquals("1.10", index.resolveVersion("org.foo", "bar", "2.0"));
+        assertEquals("2.0", index.resolveVersion("org.foo", "baz", "2.0"));
+        assertEquals("debian", index.resolveVersion("org.foo", "baz", "3.0"));
+        assertNull(index.resolveVersion("org.foo", "missing", "1.0"));
+        assertNull(index.resolveVersion("org", "foo", "bar"));
+    }
+
+    @Test
+    public void testVersionOrder() {
+        List<String> versions = new ArrayList<>(List.of("1.0", "1.0-SNAPSHOT", "1.0.1", "1.0-alpha-1", "1.0-beta", "1.0-sp1", "0.9"));
+        versions.sort(MavenVersionComparator.INSTANCE);
+        assertEquals(List.of("0.9", "1.0-alpha-1", "1.0-beta", "1.0-SNAPSHOT", "1.0", "1.0-sp1", "1.0.1"), versions);
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        Path installed = install("org.foo", "bar", "1.0");
+        try (DebianIndex index = new DebianIndex(testDir.toPath())) {
+            index.scan();
+            index.watch();
+            install("org.foo", "bar", "2.0");
+            install("org.foo", "qux", "1.0");
+            awaitVersions(index, "org.foo", "bar", List.of("1.0", "2.0"));
+            awaitVersions(index, "org.foo", "qux", List.of("1.0"));
+
+            Files.delete(installed);
+            awaitVersions(index, "org.foo", "bar", List.of("2.0"));
+        }
+    }
+
+    @Test
+    public void testWatchMovedGroup() throws Exception {
+        install("org.foo", "bar", "1.0");
+        install("org.foo", "baz", "1.0");
+        install("org.qux", "bar", "1.0");
+        try (DebianIndex index = new DebianIndex(testDir.toPath())) {
+            index.scan();
+            index.watch();
+            // a single deletion event for the group directory
+            Files.move(testDir.toPath().resolve("org/foo"), testDir.toPath().resolve("moved"));
+            awaitVersions(index, "org.foo", "bar", List.of());
+            awaitVersions(index, "org.foo", "baz", List.of());
+            awaitVersions(index, "moved", "bar", List.of("1.0"));
+            assertEquals(List.of("1.0"), index.getVersions("org.qux", "bar"));
+        }
+    }
+
+    private static void awaitVersions(DebianIndex index, String groupId, String artifactId, List<String> expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!expected.equals(index.getVersions(groupId, artifactId)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, index.getVersions(groupId, artifactId));
+    }
+}
@@ -0,0 +1,140 @@
+package org.debian.mavenproxy.repositories;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalRepositoryTest {
+
+    @TempDir
+    private File testDir;
+
+    @Test
+    public void testPutArtifact() throws IOException {
+        LocalRepository repository = new LocalRepository(testDir.getAbsolutePath());
+        String data = "test data";
+        repository.putArtifact("org.foo", "bar", "1.0", "bar-1.0.jar",
+                new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+
+        Path directory = testDir.toPath().resolve("org/foo/bar/1.0");
+        assertEquals(data, Files.readString(directory.resolve("bar-1.0.jar")));
+        assertEquals(40, Files.readString(directory.resolve("bar-1.0.jar.sha1")).length());
+        try (InputStream is = repository.getArtifact("org.foo", "bar", "1.0", "bar-1.0.jar").getInputStream()) {
+            assertEquals(data, new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testChecksumSidecars() throws Exception {
+        LocalRepository repository = new LocalRepository(testDir.getAbsolutePath(),
+                ChecksumAlgorithm.parse(List.of("sha1", "md5", "sha256", "sha512")));
+        byte[] data = "test data".getBytes(StandardCharsets.UTF_8);
+        repository.putArtifact("org.foo", "bar", "1.0", "bar-1.0.jar", new ByteArrayInputStream(data));
+
+        Path directory = testDir.toPath().resolve("org/foo/bar/1.0");
+        for (var algorithm : ChecksumAlgorithm.values()) {
+            String expected = HexFormat.of().formatHex(algorithm.newDigest().digest(data));
+            assertEquals(expected, Files.readString(directory.resolve("bar-1.0.jar." + algorithm.getExtension())));
+        }
+        // checksums supplied by upstream are replaced by the generated ones
+        repository.putArtifact("org.foo", "bar", "1.0", "bar-1.0.jar.sha256",
+                new ByteArrayInputStream("bogus".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(64, Files.readString(directory.resolve("bar-1.0.jar.sha256")).length());
+    }
+
+    @Test
+    public void testArtifactCommittedBeforeSidecars() throws IOException {
+        LocalRepository repository = new LocalRepository(testDir.getAbsolutePath(),
+                ChecksumAlgorithm.parse(List.of("sha1", "sha256")));
+        byte[] data = "test data".getBytes(StandardCharsets.UTF_8);
+        // a non-empty directory in place of the sha1 file makes writing it fail
+        Path directory = testDir.toPath().resolve("org/foo/bar/1.0");
+        Files.createDirectories(directory.resolve("bar-1.0.jar.sha1/blocker"));
+        repository.putArtifact("org.foo", "bar", "1.0", "bar-1.0.jar", new ByteArrayInputStream(data));
+
+        assertArrayEquals(data, Files.readAllBytes(directory.resolve("bar-1.0.jar")));
+        assertEquals(HexFormat.of().formatHex(ChecksumAlgorithm.SHA256.newDigest().digest(data)),
+                repository.getChecksum("org.foo", "bar", "1.0", "bar-1.0.jar", ChecksumAlgorithm.SHA256));
+        assertThrows(FileNotFoundException.class,
+                () -> repository.getChecksum("org.foo", "bar", "1.0", "bar-1.0.jar", ChecksumAlgorithm.SHA1));
+    }
+
+    @Test
+    public void testCompressedVariant() throws IOException {
+        LocalRepository repository = new LocalRepository(testDir.getAbsolutePath());
+        byte[] pom = "<project/>".getBytes(StandardCharsets.UTF_8);
+        repository.putArtifact("org.foo", "bar", "1.0", "bar-1.0.pom", new ByteArrayInputStream(pom));
+        repository.putArtifact("org.foo", "bar", "1.0", "bar-1.0.jar", new ByteArrayInputStream(pom));
+
+        Path directory = testDir.toPath().resolve("org/foo/bar/1.0");
+        try (InputStream is = new GZIPInputStream(Files.newInputStream(directory.resolve("bar-1.0.pom.gz")))) {
+            assertArrayEquals(pom, is.readAllBytes());
+        }
+        assertFalse(Files.exists(directory.resolve("bar-1.0.jar.gz")));
+        assertTrue(LocalRepository.isCompressible("bar-1.0.module"));
+        assertFalse(LocalRepository.isCompressible("bar-1.0.tar.gz"));
+    }
+
+    @Test
+    public void testGetArtifactMetadata() throws IOException {
+        LocalRepository repository = new LocalRepository(testDir.getAbsolutePath());
+        byte[] data = new byte[12345];
+        repository.putArtifact("org.foo", "bar", "1.0", "bar-1.0.jar", new ByteArrayInputStream(data));
+
+        ArtifactMetadata metadata = repository.getArtifactMetadata("org.foo", "bar", "1.0", "bar-1.0.jar");
+        assertEquals(data.length, metadata.size());
+        assertEquals(Files.getLastModifiedTime(testDir.toPath().resolve("org/foo/bar/1.0/bar-1.0.jar")).toMillis(),
+                metadata.lastModified());
+        assertThrows(FileNotFoundException.class,
+                () -> repository.getArtifactMetadata("org.foo", "bar", "1.0", "bar-1.0.pom"));
+    }
+
+    @Test
+    public void testConcurrentPutArtifact() throws Exception {
+        LocalRepository repository = new LocalRepository(testDir.getAbsolutePath());
+        byte[] data = new byte[256 * 1024];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i = 0; i < 16; ++i) {
+                writes.add(executor.submit(() -> repository.putArtifact("org.foo", "bar", "1.0", "bar-1.0.jar",
+                        new ByteArrayInputStream(data))));
+            }
+            for (var write : writes) {
+                write.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Path directory = testDir.toPath().resolve("org/foo/bar/1.0");
+        assertEquals(data.length, Files.size(directory.resolve("bar-1.0.jar")));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(f -> f.getFileName().toString().endsWith(".part")));
+        }
+    }
+}
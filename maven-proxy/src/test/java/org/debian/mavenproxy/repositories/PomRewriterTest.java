@@ -0,0 +1,65 @@
+package org.debian.mavenproxy.repositories;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PomRewriterTest {
+
+    @TempDir
+    private File testDir;
+
+    private static final String POM = """
+<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0"
+    xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+    xsi:schemaLocation="http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd">
+    <modelVersion>4.0.0</modelVersion>
+    <parent>
+        <groupId>parentNode</groupId>
+    </parent>
+    <groupId>org.debian</groupId>
+    <artifactId>maven-proxy</artifactId>
+    <version>1.0.0-SNAPSHOT</version>
+
+    <dependencies>
+        <!-- Apache HttpComponents for HTTP Server and Client -->
+        <dependency>
+            <groupId>org.apache.httpcomponents</groupId>
+            <artifactId>httpclient</artifactId>
+            <version>${httpclient.version}</version>
+        </dependency>
+    </dependencies>
+</project>
+""";
+
+    @Test
+    public void testReplaceInPom() throws Exception {
+        Path input = testDir.toPath().resolve("input.pom");
+        Files.writeString(input, POM);
+        PomRewriter rewriter = new PomRewriter();
+        byte[] data = rewriter.rewrite(input, "foo", "bar", "foobar");
+        String result = new String(data, StandardCharsets.UTF_8);
+
+        assertTrue(result.contains("<groupId>foo</groupId>"));
+        assertTrue(result.contains("<artifactId>bar</artifactId>"));
+        assertTrue(result.contains("<version>foobar</version>"));
+        assertTrue(result.contains("<groupId>org.apache.httpcomponents</groupId>"));
+        assertTrue(result.contains("<artifactId>httpclient</artifactId>"));
+        assertTrue(result.contains("<version>${httpclient.version}</version>"));
+        assertTrue(result.contains("<groupId>parentNode</groupId>"));
+        assertTrue(result.contains("<!-- Apache HttpComponents for HTTP Server and Client -->"));
+
+        // memoized for the same file and coordinates
+        assertSame(data, rewriter.rewrite(input, "foo", "bar", "foobar"));
+        assertNotSame(data, rewriter.rewrite(input, "foo", "bar", "1.0"));
+    }
+}
@@ -0,0 +1,84 @@
+package org.debian.mavenproxy.repositories;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpCoreContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RemoteRepositoryTest {
+    private HttpServer server;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = ServerBootstrap.bootstrap()
+                .setListenerPort(0)
+                .registerHandler("*", (request, response, context) -> {
+                    if (request.getRequestLine().getUri().endsWith(".jar")) {
+                        response.setStatusCode(HttpStatus.SC_OK);
+                        response.setEntity(new StringEntity("content", StandardCharsets.UTF_8));
+                    } else {
+                        response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+                        response.setEntity(new StringEntity("not found", StandardCharsets.UTF_8));
+                    }
+                })
+                .addInterceptorLast((HttpResponseInterceptor) (response, context) -> {
+                    // runs after the interceptor setting the Content-Length of the entity
+                    HttpRequest request = (HttpRequest) context.getAttribute(HttpCoreContext.HTTP_REQUEST);
+                    if (request.getRequestLine().getUri().endsWith("-malformed.jar")) {
+                        response.setHeader("Content-Length", "seven");
+                    }
+                })
+                .create();
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testConnectionsAreReleased() throws IOException {
+        // with a single pooled connection every request fails to lease one if a response leaked it
+        CloseableHttpClient httpClient = UpstreamHttpClient.create(Map.of(
+                "max-connections", 1,
+                "max-connections-per-host", 1,
+                "connection-request-timeout-ms", 1000));
+        RemoteRepository repository = new RemoteRepository("http://localhost:" + server.getLocalPort(), httpClient);
+        for (int i = 0; i < 5; ++i) {
+            assertThrows(MissingArtifactException.class,
+                    () -> repository.getArtifact("org.foo", "bar", "1.0", "bar-1.0.pom"));
+            assertThrows(MissingArtifactException.class,
+                    () -> repository.getArtifactMetadata("org.foo", "bar", "1.0", "bar-1.0.pom"));
+            assertEquals(7, repository.getArtifactMetadata("org.foo", "bar", "1.0", "bar-1.0.jar").size());
+            try (InputStream is = repository.getArtifact("org.foo", "bar", "1.0", "bar-1.0.jar").getInputStream()) {
+                assertEquals("content", new String(is.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        httpClient.close();
+    }
+
+    @Test
+    public void testMalformedContentLength() throws IOException {
+        try (CloseableHttpClient httpClient = UpstreamHttpClient.create(Map.of())) {
+            RemoteRepository repository = new RemoteRepository("http://localhost:" + server.getLocalPort(), httpClient);
+            assertEquals(-1, repository.getArtifactMetadata("org.foo", "bar", "1.0", "bar-1.0-malformed.jar").size());
+        }
+    }
+}
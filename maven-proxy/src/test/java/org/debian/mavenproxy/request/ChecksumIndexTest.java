@@ -0,0 +1,51 @@
+package org.debian.mavenproxy.request;
+
+import org.debian.mavenproxy.DbManager;
+import org.debian.mavenproxy.repositories.ChecksumAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChecksumIndexTest {
+
+    @TempDir
+    private File testDir;
+
+    private static String hex(String algorithm, String data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance(algorithm).digest(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testDigest() throws Exception {
+        DbManager dbManager = new DbManager(testDir + "/test.db");
+        dbManager.initialize();
+        Path file = testDir.toPath().resolve("bar-1.0.jar");
+        Files.writeString(file, "test data");
+        FileTime mtime = Files.getLastModifiedTime(file);
+
+        ChecksumIndex index = new ChecksumIndex(dbManager);
+        assertEquals(hex("SHA-1", "test data"), index.digest(file, ChecksumAlgorithm.SHA1));
+        assertEquals(hex("MD5", "test data"), index.digest(file, ChecksumAlgorithm.MD5));
+
+        // digests are keyed by size and modification time, a file with the same identity is not read again
+        Files.writeString(file, "data test");
+        Files.setLastModifiedTime(file, mtime);
+        dbManager.close();
+        dbManager = new DbManager(testDir + "/test.db");
+        dbManager.initialize();
+        assertEquals(hex("SHA-256", "test data"), new ChecksumIndex(dbManager).digest(file, ChecksumAlgorithm.SHA256));
+
+        Files.writeString(file, "changed data");
+        assertEquals(hex("SHA-256", "changed data"), index.digest(file, ChecksumAlgorithm.SHA256));
+        dbManager.close();
+    }
+}
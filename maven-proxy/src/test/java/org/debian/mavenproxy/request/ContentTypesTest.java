@@ -14,5 +14,6 @@ public class ContentTypesTest {
         assertEquals("application/octet-stream", tp.determineContentType(null));
         assertEquals("application/java-archive", tp.determineContentType("foo.jar"));
         assertEquals("text/plain", tp.determineContentType("foo.jar.sha1"));
+        assertEquals("application/json", tp.determineContentType("foo-1.0.module"));
     }
 }
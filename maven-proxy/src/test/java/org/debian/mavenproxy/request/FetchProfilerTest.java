@@ -0,0 +1,60 @@
+package org.debian.mavenproxy.request;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FetchProfilerTest {
+
+    @TempDir
+    private File testDir;
+
+    private static FetchProfiler.Trace trace(String path, long start, long end) {
+        FetchProfiler.Trace trace = new FetchProfiler.Trace(path, start, 1);
+        trace.end = end;
+        trace.tier = ProxyMetrics.LOCAL;
+        return trace;
+    }
+
+    @Test
+    public void testCriticalPath() {
+        FetchProfiler.Trace parent = trace("parent.pom", 0, 10);
+        FetchProfiler.Trace bom = trace("bom.pom", 12, 40);
+        // overlap with the bom, the chains through them are shorter
+        FetchProfiler.Trace sibling = trace("sibling.pom", 11, 20);
+        FetchProfiler.Trace jar = trace("lib.jar", 40, 45);
+        FetchProfiler.Trace late = trace("late.pom", 38, 50);
+        List<FetchProfiler.Trace> timeline = List.of(sibling, late, jar, bom, parent);
+        assertEquals(List.of(parent, bom, jar), FetchProfiler.criticalPath(timeline));
+        assertEquals(49, FetchProfiler.busyTime(timeline));
+        assertEquals(List.of(), FetchProfiler.criticalPath(List.of()));
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        Path report = testDir.toPath().resolve("profile.txt");
+        ProxyMetrics metrics = new ProxyMetrics(List.of("https://repo.example.org/"), null);
+        FetchProfiler profiler = new FetchProfiler(metrics, Map.of("enabled", true, "report", report.toString()));
+        FetchProfiler.Trace local = profiler.begin("/org/foo/bar/1.0/bar-1.0.pom");
+        profiler.end(local, ProxyMetrics.LOCAL, 120);
+        FetchProfiler.Trace remote = profiler.begin("/org/foo/baz/1.0/baz-1.0.jar");
+        profiler.upstream(remote, 1_000_000);
+        profiler.received(remote, 4096);
+        profiler.end(remote, ProxyMetrics.remote(0), -1);
+        profiler.writeReport(1_000_000_000);
+
+        String text = Files.readString(report);
+        assertTrue(text.startsWith("Fetch profile: 2 requests, build 1.0 s"), text);
+        assertTrue(text.contains("Critical path: 2 requests"), text);
+        assertTrue(text.lines().anyMatch(line -> line.contains(" 4096 ") && line.endsWith("https://repo.example.org/ /org/foo/baz/1.0/baz-1.0.jar")), text);
+        assertTrue(text.lines().anyMatch(line -> line.matches(" +1 .* 4096  https://repo.example.org/")), text);
+    }
+}
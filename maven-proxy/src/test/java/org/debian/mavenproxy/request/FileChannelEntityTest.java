@@ -0,0 +1,35 @@
+package org.debian.mavenproxy.request;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FileChannelEntityTest {
+
+    @TempDir
+    private File testDir;
+
+    @Test
+    public void testWriteTo() throws Exception {
+        byte[] data = new byte[3 * 1024 * 1024 + 17];
+        new Random(1).nextBytes(data);
+        Path file = testDir.toPath().resolve("artifact.jar");
+        Files.write(file, data);
+
+        FileChannelEntity entity = new FileChannelEntity(file, "application/java-archive");
+        assertEquals(data.length, entity.getContentLength());
+        assertEquals("application/java-archive", entity.getContentType().getValue());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        assertArrayEquals(data, out.toByteArray());
+    }
+}
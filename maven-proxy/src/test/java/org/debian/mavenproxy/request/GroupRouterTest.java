@@ -0,0 +1,57 @@
+package org.debian.mavenproxy.request;
+
+import org.debian.mavenproxy.Artifact;
+import org.debian.mavenproxy.DbManager;
+import org.debian.mavenproxy.repositories.RemoteRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class GroupRouterTest {
+
+    @TempDir
+    private File testDir;
+
+    private final List<RemoteRepository> remotes = List.of(
+            new RemoteRepository("https://repo.maven.apache.org/maven2"),
+            new RemoteRepository("https://dl.google.com/dl/android/maven2"),
+            new RemoteRepository("https://plugins.gradle.org/m2"));
+
+    @Test
+    public void testRouting() {
+        GroupRouter router = new GroupRouter(remotes, null);
+        assertSame(remotes, router.order("com.android.tools.build"));
+
+        router.recordFetch(new Artifact("com.android.tools.build", "gradle", "8.0.0", "pom"), "gradle-8.0.0.pom", remotes.get(1));
+        assertEquals(1, router.route("com.android.tools.build"));
+        // siblings sharing a prefix are routed to the same remote
+        assertEquals(1, router.route("com.android.tools.lint"));
+        // top level prefixes are not routed
+        assertEquals(-1, router.route("com.google"));
+
+        List<RemoteRepository> ordered = router.order("com.android.tools");
+        assertEquals(List.of(remotes.get(1), remotes.get(0), remotes.get(2)), ordered);
+    }
+
+    @Test
+    public void testRoutesAreReloaded() {
+        DbManager dbManager = new DbManager(testDir + "/test.db");
+        dbManager.initialize();
+        GroupRouter router = new GroupRouter(remotes, dbManager);
+        router.recordFetch(new Artifact("org.gradle.toolchains", "foojay", "0.8.0", "pom"), "foojay-0.8.0.pom", remotes.get(2));
+        router.recordFetch(new Artifact("org.gradle.toolchains", "foojay", "0.8.0", "jar"), "foojay-0.8.0.jar", remotes.get(2));
+
+        dbManager.close();
+
+        DbManager reopened = new DbManager(testDir + "/test.db");
+        reopened.initialize();
+        GroupRouter reloaded = new GroupRouter(remotes, reopened);
+        assertEquals(2, reloaded.route("org.gradle.toolchains"));
+        reopened.close();
+    }
+}
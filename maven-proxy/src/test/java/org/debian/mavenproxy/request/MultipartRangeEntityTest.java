@@ -0,0 +1,50 @@
+package org.debian.mavenproxy.request;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MultipartRangeEntityTest {
+
+    @TempDir
+    private File testDir;
+
+    @Test
+    public void testContentMatchesWriteTo() throws Exception {
+        byte[] data = new byte[256 * 1024];
+        new Random(1).nextBytes(data);
+        Path file = testDir.toPath().resolve("artifact.jar");
+        Files.write(file, data);
+
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99,100000-199999,-10", data.length);
+        MultipartRangeEntity entity = new MultipartRangeEntity(file, "application/java-archive", ranges, data.length);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        entity.writeTo(written);
+        assertEquals(entity.getContentLength(), written.size());
+
+        // repeatable, every call returns the whole body
+        for (int i = 0; i < 2; ++i) {
+            try (InputStream in = entity.getContent()) {
+                assertArrayEquals(written.toByteArray(), in.readAllBytes());
+            }
+        }
+
+        String body = written.toString(StandardCharsets.ISO_8859_1);
+        assertTrue(body.contains("Content-Range: bytes 100000-199999/" + data.length + "\r\n\r\n"
+                + new String(data, 100000, 100000, StandardCharsets.ISO_8859_1) + "\r\n--"), "second part");
+        assertTrue(body.endsWith(new String(data, data.length - 10, 10, StandardCharsets.ISO_8859_1)
+                + body.substring(0, body.indexOf("\r\n", 2)) + "--\r\n"), "trailer");
+    }
+}
@@ -0,0 +1,23 @@
+package org.debian.mavenproxy.request;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NegativeCacheTest {
+
+    @Test
+    public void testBounded() throws InterruptedException {
+        NegativeCache cache = new NegativeCache(null, 60_000, 100);
+        cache.addMiss("https://repo/first.pom");
+        // entries added later expire later
+        Thread.sleep(5);
+        for (int i = 0; i < 1000; ++i) {
+            cache.addMiss("https://repo/" + i + ".pom");
+        }
+        assertTrue(cache.size() <= 100);
+        assertFalse(cache.isMissing("https://repo/first.pom"));
+        assertTrue(cache.isMissing("https://repo/999.pom"));
+    }
+}
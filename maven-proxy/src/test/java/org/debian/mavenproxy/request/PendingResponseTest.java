@@ -0,0 +1,146 @@
+package org.debian.mavenproxy.request;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.debian.mavenproxy.Artifact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PendingResponseTest {
+
+    @TempDir
+    private File testDir;
+
+    private HttpServer upstream;
+    private final byte[] artifact = new byte[1024 * 1024];
+
+    @BeforeEach
+    public void startUpstream() throws IOException {
+        new Random(1).nextBytes(artifact);
+        upstream = ServerBootstrap.bootstrap()
+                .setListenerPort(0)
+                .registerHandler("*", (request, response, context) -> {
+                    // the second half of the artifact arrives after a delay
+                    InputStream delayed = new SequenceInputStream(new ByteArrayInputStream(artifact, 0, artifact.length / 2),
+                            new InputStream() {
+                                private final InputStream rest = new ByteArrayInputStream(artifact, artifact.length / 2, artifact.length);
+                                private boolean waited;
+
+                                @Override
+                                public int read() throws IOException {
+                                    if (!waited) {
+                                        waited = true;
+                                        try {
+                                            Thread.sleep(500);
+                                        } catch (InterruptedException e) {
+                                            throw new InterruptedIOException();
+                                        }
+                                    }
+                                    return rest.read();
+                                }
+                            });
+                    response.setStatusCode(HttpStatus.SC_OK);
+                    response.setEntity(new InputStreamEntity(delayed, artifact.length));
+                })
+                .create();
+        upstream.start();
+    }
+
+    @AfterEach
+    public void stopUpstream() {
+        upstream.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testProfileIncludesBody() throws Exception {
+        Path report = testDir.toPath().resolve("profile.txt");
+        RepositoryManager repositoryManager = new RepositoryManager(testDir.toPath().resolve("cache").toString(), null,
+                List.of("http://localhost:" + upstream.getLocalPort()), null, null,
+                Map.of("profiler", Map.of("enabled", true, "report", report.toString())), null);
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository());
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        long start = System.nanoTime();
+        repositoryManager.handleRequest("/org/foo/slow/1.0/slow-1.0.jar", response, get);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        response.getEntity().writeTo(body);
+        long written = System.nanoTime() - start;
+        assertArrayEquals(artifact, body.toByteArray());
+        assertTrue(written >= TimeUnit.MILLISECONDS.toNanos(500));
+
+        // the request ends once the delayed body was written, not when the handler returned
+        repositoryManager.getProfiler().writeReport(written);
+        List<String> lines = Files.readAllLines(report);
+        String slowest = lines.get(lines.indexOf("Slowest requests") + 2);
+        assertTrue(slowest.endsWith("/org/foo/slow/1.0/slow-1.0.jar"), slowest);
+        double millis = Double.parseDouble(slowest.trim().split(" +")[0]);
+        assertTrue(millis >= 500, slowest);
+        assertTrue(lines.getFirst().startsWith("Fetch profile: 1 requests"), lines.getFirst());
+    }
+
+    @Test
+    public void testFailedPendingResponseDoesNotFailFollowers() throws Exception {
+        RepositoryManager repositoryManager = new RepositoryManager(testDir.getAbsolutePath(), null,
+                List.of("http://localhost:" + upstream.getLocalPort()), null, null, Map.of(), null);
+        GetRepositoryResponse get = new GetRepositoryResponse(repositoryManager.getLocalRepository());
+        String path = "/org/foo/slow/1.0/slow-1.0.jar";
+        HttpResponse followerResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        Thread[] follower = new Thread[1];
+        IRepositoryResponse failing = new IRepositoryResponse() {
+            @Override
+            public void writeResponse(HttpResponse response, String fileName, Artifact requestedArt, ConditionalRequest conditions) throws FileNotFoundException {
+                get.writeResponse(response, fileName, requestedArt, conditions);
+            }
+
+            @Override
+            public void writePendingResponse(HttpResponse response, String fileName, Artifact requestedArt, CacheFill fill, ConditionalRequest conditions) throws FileNotFoundException {
+                // a second client joins the download, then the first one fails while it is still running
+                follower[0] = Thread.startVirtualThread(() -> repositoryManager.handleRequest(path, followerResponse, get));
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new FileNotFoundException("client gone");
+            }
+
+            @Override
+            public void writeGeneratedResponse(HttpResponse response, String fileName, byte[] content, byte[] compressed, ConditionalRequest conditions) {
+                get.writeGeneratedResponse(response, fileName, content, compressed, conditions);
+            }
+        };
+        HttpResponse leaderResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        repositoryManager.handleRequest(path, leaderResponse, failing);
+        assertEquals(HttpStatus.SC_NOT_FOUND, leaderResponse.getStatusLine().getStatusCode());
+
+        follower[0].join(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(HttpStatus.SC_OK, followerResponse.getStatusLine().getStatusCode());
+        assertArrayEquals(artifact, EntityUtils.toByteArray(followerResponse.getEntity()));
+    }
+}
@@ -0,0 +1,72 @@
+package org.debian.mavenproxy.request;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PomReferencesTest {
+
+    private static PomReferences parse(String pom) throws IOException {
+        return PomReferences.parse(new ByteArrayInputStream(pom.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testReferences() throws IOException {
+        PomReferences references = parse("""
+                <project xmlns="http://maven.apache.org/POM/4.0.0">
+                  <parent>
+                    <groupId>org.foo</groupId>
+                    <artifactId>parent</artifactId>
+                    <version>3</version>
+                  </parent>
+                  <artifactId>app</artifactId>
+                  <version>1.0</version>
+                  <properties>
+                    <lib.version>2.${minor}</lib.version>
+                    <minor>5</minor>
+                  </properties>
+                  <dependencyManagement>
+                    <dependencies>
+                      <dependency>
+                        <groupId>org.bom</groupId><artifactId>bom</artifactId><version>${project.version}</version>
+                        <type>pom</type><scope>import</scope>
+                      </dependency>
+                      <dependency>
+                        <groupId>org.managed</groupId><artifactId>managed</artifactId><version>1</version>
+                      </dependency>
+                    </dependencies>
+                  </dependencyManagement>
+                  <dependencies>
+                    <dependency>
+                      <groupId>${project.groupId}</groupId><artifactId>lib</artifactId><version>${lib.version}</version>
+                      <exclusions><exclusion><groupId>x</groupId><artifactId>y</artifactId></exclusion></exclusions>
+                    </dependency>
+                    <dependency>
+                      <groupId>org.foo</groupId><artifactId>test</artifactId><version>1</version><scope>test</scope><optional>true</optional>
+                    </dependency>
+                    <dependency><groupId>org.foo</groupId><artifactId>managed</artifactId></dependency>
+                    <dependency><groupId>org.foo</groupId><artifactId>range</artifactId><version>[1.0,2.0)</version></dependency>
+                    <dependency><groupId>org.foo</groupId><artifactId>undefined</artifactId><version>${missing}</version></dependency>
+                  </dependencies>
+                </project>
+                """);
+        assertEquals(new PomReferences.Reference("org.foo", "parent", "3", "jar", null, false), references.parent());
+        assertEquals(2, references.dependencies().size());
+        assertEquals(new PomReferences.Reference("org.foo", "lib", "2.5", "jar", "compile", false), references.dependencies().get(0));
+        assertEquals(new PomReferences.Reference("org.foo", "test", "1", "jar", "test", true), references.dependencies().get(1));
+        assertEquals(1, references.imports().size());
+        assertEquals(new PomReferences.Reference("org.bom", "bom", "1.0", "pom", null, false), references.imports().getFirst());
+    }
+
+    @Test
+    public void testInvalidPom() throws IOException {
+        assertTrue(parse("<project/>").dependencies().isEmpty());
+        assertThrows(IOException.class, () -> parse("<project>"));
+    }
+}
@@ -0,0 +1,142 @@
+package org.debian.mavenproxy.request;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.debian.mavenproxy.Artifact;
+import org.debian.mavenproxy.DbManager;
+import org.debian.mavenproxy.repositories.RemoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RemoteLookupTest {
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    public void stopServers() {
+        for (var server : servers) {
+            server.shutdown(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @TempDir
+    private File testDir;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private RemoteRepository startRemote(String content, long delay) throws IOException {
+        return startRemote(content, delay, true);
+    }
+
+    private RemoteRepository startRemote(String content, long delay, boolean head) throws IOException {
+        HttpServer server = ServerBootstrap.bootstrap()
+                .setListenerPort(0)
+                .registerHandler("*", (request, response, context) -> {
+                    requests.incrementAndGet();
+                    if (!head && request.getRequestLine().getMethod().equals("HEAD")) {
+                        response.setStatusCode(HttpStatus.SC_METHOD_NOT_ALLOWED);
+                        return;
+                    }
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (content == null) {
+                        response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+                        return;
+                    }
+                    response.setStatusCode(HttpStatus.SC_OK);
+                    response.setEntity(new StringEntity(content, StandardCharsets.UTF_8));
+                })
+                .create();
+        server.start();
+        servers.add(server);
+        return new RemoteRepository("http://localhost:" + server.getLocalPort());
+    }
+
+    private static String read(RemoteLookup lookup) throws IOException {
+        try (InputStream is = lookup.fetch(new Artifact("org.foo", "bar", "1.0", "pom"), "bar-1.0.pom").content().getInputStream()) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testHighestPriorityRemoteWins() throws IOException {
+        List<RemoteRepository> remotes = List.of(
+                startRemote(null, 300),
+                startRemote("second", 200),
+                startRemote("third", 0));
+        RemoteLookup lookup = new RemoteLookup(new GroupRouter(remotes, null), new NegativeCache(null, 0), Map.of("parallelism", 3, "hedge-delay-ms", 10));
+        assertEquals("second", read(lookup));
+    }
+
+    @Test
+    public void testRejectedProbeFallsBackToGet() throws IOException {
+        List<RemoteRepository> remotes = List.of(
+                startRemote("first", 0, false),
+                startRemote("second", 0));
+        RemoteLookup lookup = new RemoteLookup(new GroupRouter(remotes, null), new NegativeCache(null, 0), Map.of("parallelism", 2));
+        assertEquals("first", read(lookup));
+    }
+
+    @Test
+    public void testSequentialLookup() throws IOException {
+        List<RemoteRepository> remotes = List.of(
+                startRemote(null, 0),
+                startRemote("second", 0));
+        RemoteLookup lookup = new RemoteLookup(new GroupRouter(remotes, null), new NegativeCache(null, 0), Map.of());
+        assertEquals("second", read(lookup));
+    }
+
+    @Test
+    public void testNotFound() throws IOException {
+        List<RemoteRepository> remotes = List.of(
+                startRemote(null, 0),
+                startRemote(null, 50));
+        RemoteLookup lookup = new RemoteLookup(new GroupRouter(remotes, null), new NegativeCache(null, 0), Map.of("parallelism", 2));
+        assertThrows(FileNotFoundException.class, () -> read(lookup));
+    }
+
+    @Test
+    public void testNegativeCache() throws IOException {
+        DbManager dbManager = new DbManager(testDir + "/test.db");
+        dbManager.initialize();
+        List<RemoteRepository> remotes = List.of(
+                startRemote(null, 0),
+                startRemote(null, 0));
+        RemoteLookup lookup = new RemoteLookup(new GroupRouter(remotes, null), new NegativeCache(dbManager, 60_000), Map.of("parallelism", 2));
+        assertThrows(FileNotFoundException.class, () -> read(lookup));
+        int initialRequests = requests.get();
+        assertTrue(initialRequests > 0);
+        assertThrows(FileNotFoundException.class, () -> read(lookup));
+        assertEquals(initialRequests, requests.get());
+
+        dbManager.close();
+
+        // misses are reloaded from the database
+        DbManager reopened = new DbManager(testDir + "/test.db");
+        reopened.initialize();
+        RemoteLookup reloaded = new RemoteLookup(new GroupRouter(remotes, null), new NegativeCache(reopened, 60_000), Map.of());
+        assertThrows(FileNotFoundException.class, () -> read(reloaded));
+        assertEquals(initialRequests, requests.get());
+        reopened.close();
+    }
+}
@@ -0,0 +1,57 @@
+package org.debian.mavenproxy.request;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareExecution() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        SingleFlight.Flight leader = singleFlight.begin("key");
+        assertTrue(leader.isLeader());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 7; ++i) {
+                results.add(executor.submit(() -> {
+                    SingleFlight.Flight flight = singleFlight.begin("key");
+                    return !flight.isLeader() && flight.await();
+                }));
+            }
+            // give the waiters a chance to join the running execution
+            Thread.sleep(100);
+            leader.complete(true);
+            for (var result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // the key is released once the execution completes
+        SingleFlight.Flight next = singleFlight.begin("key");
+        assertTrue(next.isLeader());
+        next.complete(false);
+    }
+
+    @Test
+    public void testFailureIsReleased() {
+        SingleFlight singleFlight = new SingleFlight();
+        SingleFlight.Flight leader = singleFlight.begin("key");
+        SingleFlight.Flight follower = singleFlight.begin("key");
+        assertFalse(follower.isLeader());
+        leader.fail(new IllegalStateException("failed"));
+        assertThrows(IllegalStateException.class, follower::await);
+        assertTrue(singleFlight.begin("key").isLeader());
+    }
+}